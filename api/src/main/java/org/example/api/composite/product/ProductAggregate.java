@@ -1,5 +1,7 @@
 package org.example.api.composite.product;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
 
 public class ProductAggregate {
@@ -9,6 +11,8 @@ public class ProductAggregate {
     private final List<RecommendationSummary> recommendations;
     private final List<ReviewSummary> reviews;
     private final ServiceAddress serviceAddress;
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private final boolean stale;
     public ProductAggregate(){
         productId = 0;
         name = null;
@@ -16,15 +20,21 @@ public class ProductAggregate {
         recommendations = null;
         reviews = null;
         serviceAddress = null;
+        stale = false;
     }
 
     public ProductAggregate(int productId, String name, int weight, List<RecommendationSummary> recommendations, List<ReviewSummary> reviews, ServiceAddress serviceAddress) {
+        this(productId,name,weight,recommendations,reviews,serviceAddress,false);
+    }
+
+    public ProductAggregate(int productId, String name, int weight, List<RecommendationSummary> recommendations, List<ReviewSummary> reviews, ServiceAddress serviceAddress, boolean stale) {
         this.productId = productId;
         this.name = name;
         this.weight = weight;
         this.recommendations = recommendations;
         this.reviews = reviews;
         this.serviceAddress = serviceAddress;
+        this.stale = stale;
     }
 
     public int getProductId() {
@@ -50,4 +60,8 @@ public class ProductAggregate {
     public ServiceAddress getServiceAddress() {
         return serviceAddress;
     }
+
+    public boolean isStale() {
+        return stale;
+    }
 }
@@ -0,0 +1,79 @@
+package org.example.api.composite.product;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProductAggregateFragment {
+    public enum Type {
+        PRODUCT,
+        RECOMMENDATION,
+        REVIEW
+    }
+    private final Type type;
+    private final int productId;
+    private final String name;
+    private final Integer weight;
+    private final RecommendationSummary recommendation;
+    private final ReviewSummary review;
+    private final String serviceAddress;
+    public ProductAggregateFragment(){
+        type = null;
+        productId = 0;
+        name = null;
+        weight = null;
+        recommendation = null;
+        review = null;
+        serviceAddress = null;
+    }
+
+    public ProductAggregateFragment(int productId, String name, int weight, String serviceAddress) {
+        this(Type.PRODUCT,productId,name,weight,null,null,serviceAddress);
+    }
+
+    public ProductAggregateFragment(int productId, RecommendationSummary recommendation, String serviceAddress) {
+        this(Type.RECOMMENDATION,productId,null,null,recommendation,null,serviceAddress);
+    }
+
+    public ProductAggregateFragment(int productId, ReviewSummary review, String serviceAddress) {
+        this(Type.REVIEW,productId,null,null,null,review,serviceAddress);
+    }
+
+    private ProductAggregateFragment(Type type, int productId, String name, Integer weight,
+                                     RecommendationSummary recommendation, ReviewSummary review, String serviceAddress) {
+        this.type = type;
+        this.productId = productId;
+        this.name = name;
+        this.weight = weight;
+        this.recommendation = recommendation;
+        this.review = review;
+        this.serviceAddress = serviceAddress;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Integer getWeight() {
+        return weight;
+    }
+
+    public RecommendationSummary getRecommendation() {
+        return recommendation;
+    }
+
+    public ReviewSummary getReview() {
+        return review;
+    }
+
+    public String getServiceAddress() {
+        return serviceAddress;
+    }
+}
@@ -8,7 +8,11 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+
+import java.util.List;
+
 @SecurityRequirement(name = "security_auth")
 @Tag(name = "ProductComposite",description =
 "REST API for composite product information.")
@@ -64,4 +68,48 @@ public interface ProductCompositeService {
             @RequestParam(value = "delay",required = false,defaultValue = "0") int delay,
             @RequestParam(value = "faultPercent",required = false,defaultValue = "0")
                                       int faultPercent);
+    @Operation(
+            summary =
+                    "${api.product-composite.get-composite-products.description}",
+            description =
+                    "${api.product-composite.get-composite-products.notes}"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",description =
+            "${api.responseCodes.ok.description}"),
+            @ApiResponse(responseCode = "400",description =
+            "${api.responseCodes.badRequest.description}"),
+            @ApiResponse(responseCode = "422",description =
+            "${api.responseCodes.unprocessableEntity.description}")
+    })
+    @GetMapping(
+            value = "/product-composite",
+            produces = "application/json"
+    )
+    Flux<ProductAggregate> getProducts(
+            @RequestHeader HttpHeaders headers,
+            @RequestParam(value = "productIds",required = true) List<Integer> productIds);
+    @Operation(
+            summary =
+                    "${api.product-composite.get-composite-product-stream.description}",
+            description =
+                    "${api.product-composite.get-composite-product-stream.notes}"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",description =
+            "${api.responseCodes.ok.description}"),
+            @ApiResponse(responseCode = "400",description =
+            "${api.responseCodes.badRequest.description}"),
+            @ApiResponse(responseCode = "404",description =
+            "${api.responseCodes.notFound.description}"),
+            @ApiResponse(responseCode = "422",description =
+            "${api.responseCodes.unprocessableEntity.description}")
+    })
+    @GetMapping(
+            value = "/product-composite/{productId}/stream",
+            produces = {"application/x-ndjson","text/event-stream"}
+    )
+    Flux<ProductAggregateFragment> getProductStream(
+            @RequestHeader HttpHeaders headers,
+            @PathVariable int productId);
 }
@@ -1,10 +1,14 @@
 package org.example.api.core.product;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 public class Product {
     private int productId;
     private String name;
     private int weight;
     private String serviceAddress;
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean stale;
     public Product(){
         productId = 0;
         name = null;
@@ -35,6 +39,10 @@ public class Product {
         return serviceAddress;
     }
 
+    public boolean isStale() {
+        return stale;
+    }
+
     public void setProductId(int productId) {
         this.productId = productId;
     }
@@ -50,4 +58,8 @@ public class Product {
     public void setServiceAddress(String serviceAddress) {
         this.serviceAddress = serviceAddress;
     }
+
+    public void setStale(boolean stale) {
+        this.stale = stale;
+    }
 }
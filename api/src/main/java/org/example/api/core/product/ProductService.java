@@ -2,8 +2,11 @@ package org.example.api.core.product;
 
 import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 public interface ProductService {
     Mono<Product> createProduct(Product product);
     Mono<Void> deleteProduct(int productId);
@@ -17,4 +20,11 @@ public interface ProductService {
             @RequestParam(value = "delay",required = false,defaultValue = "0") int delay,
             @RequestParam(value = "faultPercent",required = false,defaultValue = "0")
                              int faultPercent);
+    @GetMapping(
+            value = "/product",
+            produces = "application/json"
+    )
+    Flux<Product> getProducts(
+            @RequestHeader HttpHeaders headers,
+            @RequestParam(value = "productIds",required = true) List<Integer> productIds);
 }
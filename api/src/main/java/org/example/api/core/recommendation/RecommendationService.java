@@ -10,12 +10,28 @@ import java.util.List;
 public interface RecommendationService {
     Mono<Recommendation> createRecommendation(Recommendation body);
     Mono<Void> deleteRecommendations(int productId);
+    /**
+     * Returns a page of the recommendations of the product ordered by recommendationId, 100 unless pageSize says
+     * otherwise and at most 1000. The next page starts after the recommendationId of the last recommendation of a
+     * full page, a shorter page is the last one.
+     */
     @GetMapping(
             value = "/recommendation",
             produces = "application/json"
     )
     Flux<Recommendation> getRecommendations(
             @RequestHeader HttpHeaders headers,
-            @RequestParam(value = "productId",required = true)int productId
+            @RequestParam(value = "productId",required = true)int productId,
+            @RequestParam(value = "afterRecommendationId",required = false) Integer afterRecommendationId,
+            @RequestParam(value = "pageSize",required = false,defaultValue = "100") int pageSize
+    );
+    @GetMapping(
+            value = "/recommendation",
+            params = "productIds",
+            produces = "application/json"
+    )
+    Flux<Recommendation> getRecommendationsByProductIds(
+            @RequestHeader HttpHeaders headers,
+            @RequestParam(value = "productIds",required = true) List<Integer> productIds
     );
 }
@@ -10,11 +10,34 @@ import java.util.List;
 public interface ReviewService {
     Mono<Review> createReview(Review body);
     Mono<Void> deleteReviews(int productId);
+    /**
+     * Bulk ingest of reviews, accepts a JSON array or newline delimited JSON and returns the number of inserted reviews.
+     */
+    @PostMapping(
+            value = "/review/bulk",
+            consumes = {"application/json","application/x-ndjson"},
+            produces = "application/json"
+    )
+    Mono<Long> createReviews(@RequestBody Flux<Review> body);
+    /**
+     * Returns a page of the reviews of the product ordered by reviewId, 100 unless pageSize says otherwise and at most
+     * 1000. The next page starts after the reviewId of the last review of a full page, a shorter page is the last one.
+     */
     @GetMapping(
             value = "/review",
             produces = "application/json"
     )
     Flux<Review> getReviews(
             @RequestHeader HttpHeaders headers,
-            @RequestParam(value = "productId",required = true) int productId);
+            @RequestParam(value = "productId",required = true) int productId,
+            @RequestParam(value = "afterReviewId",required = false) Integer afterReviewId,
+            @RequestParam(value = "pageSize",required = false,defaultValue = "100") int pageSize);
+    @GetMapping(
+            value = "/review",
+            params = "productIds",
+            produces = "application/json"
+    )
+    Flux<Review> getReviewsByProductIds(
+            @RequestHeader HttpHeaders headers,
+            @RequestParam(value = "productIds",required = true) List<Integer> productIds);
 }
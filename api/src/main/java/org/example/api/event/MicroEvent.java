@@ -4,28 +4,51 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.datatype.jsr310.ser.ZonedDateTimeSerializer;
 
 import java.time.ZonedDateTime;
+import java.util.UUID;
 
 public class MicroEvent<K,T> {
     public enum Type {
         CREATE,
-        DELETE
+        DELETE,
+        /**
+         * Deletes the data of the key and creates the data of the event, published instead of a DELETE directly
+         * followed by a CREATE.
+         */
+        REPLACE
     }
+    private final String eventId;
     private final Type eventType;
     private final K key;
     private final T data;
     private final ZonedDateTime eventCreatedAt;
     public MicroEvent(){
+        this.eventId = null;
         this.eventType = null;
         this.key = null;
         this.data = null;
         this.eventCreatedAt = null;
     }
     public MicroEvent(Type eventType, K key, T data){
+        this.eventId = UUID.randomUUID().toString();
         this.eventType = eventType;
         this.key = key;
         this.data = data;
         this.eventCreatedAt = ZonedDateTime.now();
     }
+    public MicroEvent(String eventId, Type eventType, K key, T data, ZonedDateTime eventCreatedAt){
+        this.eventId = eventId;
+        this.eventType = eventType;
+        this.key = key;
+        this.data = data;
+        this.eventCreatedAt = eventCreatedAt;
+    }
+
+    /**
+     * Unique id of the event, kept when the event is redelivered so that consumers can skip duplicates.
+     */
+    public String getEventId() {
+        return eventId;
+    }
 
     public Type getEventType() {
         return eventType;
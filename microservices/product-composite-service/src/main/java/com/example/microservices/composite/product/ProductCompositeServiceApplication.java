@@ -5,6 +5,7 @@ import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.info.Contact;
 import io.swagger.v3.oas.models.info.Info;
 import io.swagger.v3.oas.models.info.License;
+import org.example.util.concurrent.VirtualThreads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,10 +14,8 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
-import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Hooks;
 import reactor.core.scheduler.Scheduler;
-import reactor.core.scheduler.Schedulers;
 
 @SpringBootApplication
 @ComponentScan({"com.example","org.example"})
@@ -53,24 +52,22 @@ public class ProductCompositeServiceApplication {
 	}
 	private final Integer threadPoolSize;
 	private final Integer taskQueueSize;
+	private final boolean virtualThreads;
 	@Autowired
 	public ProductCompositeServiceApplication(
 			@Value("${app.threadPoolSize:10}") Integer threadPoolSize,
-			@Value("${app.taskQueueSize:100}") Integer taskQueueSize
+			@Value("${app.taskQueueSize:100}") Integer taskQueueSize,
+			@Value("${app.virtualThreads.enabled:false}") boolean virtualThreads
 	){
 		this.threadPoolSize = threadPoolSize;
 		this.taskQueueSize = taskQueueSize;
+		this.virtualThreads = virtualThreads;
 	}
 
 	@Bean
 	public Scheduler publishEventScheduler(){
-		LOG.info("Creates a messagingScheduler with connectionPoolSize = {}",threadPoolSize);
-		return Schedulers.newBoundedElastic(threadPoolSize,taskQueueSize,"publish-pool");
-	}
-
-	@Bean
-	public WebClient webClient(WebClient.Builder builder){
-		return builder.build();
+		LOG.info("Creates a messagingScheduler with connectionPoolSize = {}, virtual threads = {}",threadPoolSize,virtualThreads);
+		return VirtualThreads.newBoundedElasticOrVirtual(virtualThreads,threadPoolSize,taskQueueSize,"publish-pool");
 	}
 
 	public static void main(String[] args) {
@@ -0,0 +1,80 @@
+package com.example.microservices.composite.product;
+
+import io.netty.channel.ChannelOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+@Configuration
+public class WebClientConfig {
+    private static final Logger LOG = LoggerFactory.getLogger(WebClientConfig.class);
+    @Value("${app.httpClient.maxConnections:50}") int maxConnections;
+    @Value("${app.httpClient.pendingAcquireMaxCount:100}") int pendingAcquireMaxCount;
+    @Value("${app.httpClient.pendingAcquireTimeoutMs:500}") long pendingAcquireTimeoutMs;
+    @Value("${app.httpClient.maxIdleTimeMs:30000}") long maxIdleTimeMs;
+    @Value("${app.httpClient.maxLifeTimeMs:300000}") long maxLifeTimeMs;
+    @Value("${app.httpClient.evictInBackgroundMs:30000}") long evictInBackgroundMs;
+    @Value("${app.httpClient.connectTimeoutMs:1000}") int connectTimeoutMs;
+    @Value("${app.httpClient.h2c:false}") boolean h2c;
+
+    /**
+     * Reactor Netty keeps one pool per remote address, so every core service gets its own pool with these limits.
+     * The pool gauges (active, idle, pending connections) are published as reactor.netty.connection.provider.*.
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider coreServicesConnectionProvider(){
+        LOG.info("Creates a connection provider with maxConnections = {}, pendingAcquireMaxCount = {}, maxIdleTime = {}ms",
+                maxConnections,pendingAcquireMaxCount,maxIdleTimeMs);
+        return ConnectionProvider.builder("core-services")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                .maxIdleTime(Duration.ofMillis(maxIdleTimeMs))
+                .maxLifeTime(Duration.ofMillis(maxLifeTimeMs))
+                .evictInBackground(Duration.ofMillis(evictInBackgroundMs))
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    @Primary
+    public WebClient webClient(WebClient.Builder builder,ConnectionProvider coreServicesConnectionProvider){
+        return builder.clientConnector(new ReactorClientHttpConnector(httpClient(HttpClient.create(coreServicesConnectionProvider))))
+                .build();
+    }
+
+    /**
+     * Sends hedged calls over a new connection each. The core services are reached through a service address
+     * (kube-proxy or the Docker DNS round-robin) that balances per connection, so a hedge over the pooled keep-alive
+     * or h2c connection of the slow call would go to the same instance. A new connection is balanced again on its
+     * own, it lands on another instance unless the balancer picks the same one by chance.
+     */
+    @Bean
+    public WebClient hedgeWebClient(WebClient.Builder builder){
+        return builder.clientConnector(new ReactorClientHttpConnector(httpClient(HttpClient.create(ConnectionProvider.newConnection()))))
+                .build();
+    }
+
+    private HttpClient httpClient(HttpClient httpClient){
+        httpClient = httpClient
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS,connectTimeoutMs)
+                .option(ChannelOption.SO_KEEPALIVE,true)
+                .keepAlive(true);
+        if (h2c){
+            // Prior knowledge is not assumed, HTTP/1.1 is kept as fallback for services without h2c
+            LOG.info("Enables HTTP/2 over cleartext (h2c) to the core services");
+            httpClient = httpClient.protocol(HttpProtocol.H2C,HttpProtocol.HTTP11);
+        }
+        return httpClient;
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.microservices.composite.product.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.api.exceptions.InvalidInputException;
+import org.example.api.exceptions.NotFoundException;
+import org.example.api.exceptions.ServiceUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+@Component
+public class AdaptiveConcurrencyLimiter {
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+    private static final double BACKOFF_RATIO = 0.9;
+    private final boolean enabled;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double tolerance;
+    private final double longRttAlpha;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String,Endpoint> endpoints = new ConcurrentHashMap<>();
+    @Autowired
+    public AdaptiveConcurrencyLimiter(
+            @Value("${app.concurrencyLimit.enabled:false}") boolean enabled,
+            @Value("${app.concurrencyLimit.initialLimit:20}") int initialLimit,
+            @Value("${app.concurrencyLimit.minLimit:5}") int minLimit,
+            @Value("${app.concurrencyLimit.maxLimit:200}") int maxLimit,
+            @Value("${app.concurrencyLimit.smoothing:0.2}") double smoothing,
+            @Value("${app.concurrencyLimit.rttTolerance:1.5}") double tolerance,
+            @Value("${app.concurrencyLimit.longWindow:600}") int longWindow,
+            MeterRegistry meterRegistry
+    ){
+        this.enabled = enabled;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.tolerance = tolerance;
+        this.longRttAlpha = 2.0 / (longWindow + 1);
+        this.meterRegistry = meterRegistry;
+        LOG.info("Creates an adaptive concurrency limiter, enabled = {}, limit = {} within [{}, {}]",
+                enabled,initialLimit,minLimit,maxLimit);
+    }
+    public <V> Mono<V> mono(String endpoint,Supplier<Mono<V>> call){
+        // singleOrEmpty() waits for completion, Mono.from() would cancel after the value and skip the sample
+        return flux(endpoint,() -> call.get().flux()).singleOrEmpty();
+    }
+    /**
+     * Rejects the call with a {@link ServiceUnavailableException} if the endpoint already has as many calls in flight
+     * as its current limit. The limit follows the gradient between the long term and the latest round trip time:
+     * it shrinks when latency rises above the tolerated ratio and grows by about the square root of the limit otherwise.
+     */
+    public <V> Flux<V> flux(String endpoint,Supplier<Flux<V>> call){
+        if (!enabled){
+            return call.get();
+        }
+        Endpoint e = endpoints.computeIfAbsent(endpoint,Endpoint::new);
+        return Flux.defer(() -> {
+            int inFlight = e.tryAcquire();
+            if (inFlight < 0){
+                e.rejected.increment();
+                LOG.debug("Rejects call to {}, concurrency limit {} reached",endpoint,e.getLimit());
+                return Flux.error(new ServiceUnavailableException("Concurrency limit reached for " + endpoint));
+            }
+            long start = System.nanoTime();
+            return call.get()
+                    .doOnComplete(() -> e.onSample(System.nanoTime() - start,inFlight))
+                    .doOnError(ex -> {
+                        if (isResponse(ex)){
+                            e.onSample(System.nanoTime() - start,inFlight);
+                        }else{
+                            e.onDropped();
+                        }
+                    })
+                    .doFinally(signal -> {
+                        // Time limiter timeouts and hedges that lost cancel the call
+                        if (signal == SignalType.CANCEL){
+                            e.onCancelled(System.nanoTime() - start);
+                        }
+                        e.release();
+                    });
+        });
+    }
+    private boolean isResponse(Throwable ex){
+        // The service did answer, so the round trip time is as valid as for a successful call
+        return ex instanceof NotFoundException || ex instanceof InvalidInputException;
+    }
+    private class Endpoint {
+        private final String name;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final Counter rejected;
+        private double limit = initialLimit;
+        private double longRtt;
+        private double estimatedQueue;
+        Endpoint(String name){
+            this.name = name;
+            Gauge.builder("composite.concurrency.limit",this,Endpoint::getLimit)
+                    .description("Current adaptive concurrency limit")
+                    .tag("endpoint",name)
+                    .register(meterRegistry);
+            Gauge.builder("composite.concurrency.inflight",inFlight,AtomicInteger::get)
+                    .description("Number of calls in flight")
+                    .tag("endpoint",name)
+                    .register(meterRegistry);
+            Gauge.builder("composite.concurrency.queue",this,Endpoint::getEstimatedQueue)
+                    .description("Estimated number of calls queued in the downstream service")
+                    .tag("endpoint",name)
+                    .register(meterRegistry);
+            this.rejected = Counter.builder("composite.concurrency.rejected")
+                    .description("Number of calls rejected by the concurrency limit")
+                    .tag("endpoint",name)
+                    .register(meterRegistry);
+        }
+        int tryAcquire(){
+            while (true){
+                int current = inFlight.get();
+                if (current >= (int) getLimit()){
+                    return -1;
+                }
+                if (inFlight.compareAndSet(current,current + 1)){
+                    return current + 1;
+                }
+            }
+        }
+        void release(){
+            inFlight.decrementAndGet();
+        }
+        synchronized void onSample(long rtt,int inFlightAtStart){
+            longRtt = (longRtt == 0) ? rtt : longRtt * (1 - longRttAlpha) + rtt * longRttAlpha;
+            // Let the long term average recover quickly after a period of high latency
+            if (longRtt / rtt > 2){
+                longRtt *= 0.95;
+            }
+            double gradient = Math.max(0.5,Math.min(1.0,tolerance * longRtt / rtt));
+            double newLimit = limit * gradient + Math.sqrt(limit);
+            estimatedQueue = Math.max(0,limit * (1 - longRtt / rtt));
+            // Only grow on evidence that the current limit is actually used
+            if (newLimit > limit && inFlightAtStart < limit / 2){
+                return;
+            }
+            setLimit(limit * (1 - smoothing) + newLimit * smoothing);
+        }
+        synchronized void onDropped(){
+            setLimit(limit * BACKOFF_RATIO);
+        }
+        /**
+         * A call that was cancelled after it took longer than the tolerated round trip time was given up as too slow,
+         * the strongest overload signal, so it counts as dropped. An earlier cancel says nothing about the latency.
+         */
+        synchronized void onCancelled(long elapsed){
+            if (elapsed > tolerance * longRtt){
+                LOG.debug("Call to {} cancelled after {}ms, counts as dropped",name,elapsed / 1_000_000);
+                onDropped();
+            }
+        }
+        private void setLimit(double newLimit){
+            double previous = limit;
+            limit = Math.max(minLimit,Math.min(maxLimit,newLimit));
+            if ((int) previous != (int) limit){
+                LOG.debug("Concurrency limit for {} changed from {} to {}",name,(int) previous,(int) limit);
+            }
+        }
+        synchronized double getLimit(){
+            return limit;
+        }
+        synchronized double getEstimatedQueue(){
+            return estimatedQueue;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.microservices.composite.product.services;
+
+import org.example.api.event.MicroEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.Consumer;
+
+@Configuration
+public class CacheInvalidationConfig {
+    private static final Logger LOG = LoggerFactory.getLogger(CacheInvalidationConfig.class);
+    private final ProductAggregateCache aggregateCache;
+    private final LastKnownGoodProductStore lastKnownGood;
+    @Autowired
+    public CacheInvalidationConfig(ProductAggregateCache aggregateCache,LastKnownGoodProductStore lastKnownGood){
+        this.aggregateCache = aggregateCache;
+        this.lastKnownGood = lastKnownGood;
+    }
+    @Bean
+    public Consumer<MicroEvent<Integer,Object>> aggregateCacheInvalidator(){
+        return event -> {
+            if (event.getKey() == null){
+                LOG.warn("Got a {} event without key, can not invalidate the aggregate cache",event.getEventType());
+                return;
+            }
+            LOG.debug("Invalidate aggregate cache on {} event for productId: {}",event.getEventType(),event.getKey());
+            aggregateCache.invalidate(event.getKey());
+            // Every instance consumes the events, a deleted product must not be served as stale by any of them
+            if (event.getEventType() == MicroEvent.Type.DELETE){
+                lastKnownGood.remove(event.getKey());
+            }
+        };
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.microservices.composite.product.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.api.event.MicroEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Holds the events of a binding and key for a short window and drops the ones that are superseded before they are
+ * published. A DELETE supersedes all earlier events of the key, a CREATE right after a DELETE turns both into one
+ * REPLACE. Other events are published as they are and in order, so the end state downstream is unchanged.
+ */
+@Component
+public class EventCoalescer {
+    private static final Logger LOG = LoggerFactory.getLogger(EventCoalescer.class);
+    private final boolean enabled;
+    private final long windowMs;
+    private final Scheduler scheduler = Schedulers.parallel();
+    private final Counter coalesced;
+    private final Map<PendingKey,List<PendingEvent>> pending = new HashMap<>();
+    @Autowired
+    public EventCoalescer(
+            @Value("${app.eventCoalescing.enabled:false}") boolean enabled,
+            @Value("${app.eventCoalescing.windowMs:50}") long windowMs,
+            MeterRegistry meterRegistry
+    ){
+        this.enabled = enabled;
+        this.windowMs = windowMs;
+        this.coalesced = Counter.builder("composite.events.coalesced")
+                .description("Number of events that were superseded before they were published")
+                .register(meterRegistry);
+        LOG.info("Creates an event coalescer, enabled = {}, window = {}ms",enabled,windowMs);
+    }
+    /**
+     * Passes the event to the publisher at the end of the window of its key. Completes when the event, or the event
+     * that superseded it, is published.
+     */
+    public Mono<Void> submit(String bindingName,MicroEvent event,BiFunction<String,MicroEvent,Mono<Void>> publisher){
+        if (!enabled || event.getKey() == null){
+            return publisher.apply(bindingName,event);
+        }
+        return Mono.defer(() -> {
+            PendingKey key = new PendingKey(bindingName,event.getKey());
+            Sinks.One<Void> result = Sinks.one();
+            boolean opensWindow;
+            synchronized (pending){
+                List<PendingEvent> events = pending.get(key);
+                opensWindow = events == null;
+                if (opensWindow){
+                    events = new ArrayList<>();
+                    pending.put(key,events);
+                }
+                add(events,new PendingEvent(event,new ArrayList<>(List.of(result))));
+            }
+            if (opensWindow){
+                scheduler.schedule(() -> flush(key,publisher),windowMs,TimeUnit.MILLISECONDS);
+            }
+            return result.asMono();
+        });
+    }
+    private void add(List<PendingEvent> events,PendingEvent next){
+        MicroEvent event = next.event();
+        if (event.getEventType() == MicroEvent.Type.DELETE || event.getEventType() == MicroEvent.Type.REPLACE){
+            events.forEach(superseded -> next.waiters().addAll(superseded.waiters()));
+            coalesced.increment(events.size());
+            events.clear();
+            events.add(next);
+        }else if (event.getEventType() == MicroEvent.Type.CREATE
+                && events.size() == 1 && events.get(0).event().getEventType() == MicroEvent.Type.DELETE){
+            PendingEvent delete = events.get(0);
+            next.waiters().addAll(delete.waiters());
+            coalesced.increment();
+            events.set(0,new PendingEvent(new MicroEvent(event.getEventId(),MicroEvent.Type.REPLACE,
+                    event.getKey(),event.getData(),event.getEventCreatedAt()),next.waiters()));
+        }else{
+            events.add(next);
+        }
+    }
+    private void flush(PendingKey key,BiFunction<String,MicroEvent,Mono<Void>> publisher){
+        List<PendingEvent> events;
+        synchronized (pending){
+            events = pending.remove(key);
+        }
+        LOG.debug("Publishes {} coalesced events for key {} to {}",events.size(),key.key(),key.bindingName());
+        // Subscribes in order, so the events of the key are queued for the binding in order
+        Flux.fromIterable(events)
+                .flatMapSequential(pendingEvent -> publisher.apply(key.bindingName(),pendingEvent.event())
+                        .doOnSuccess(done -> pendingEvent.waiters().forEach(Sinks.One::tryEmitEmpty))
+                        .doOnError(ex -> pendingEvent.waiters().forEach(waiter -> waiter.tryEmitError(ex)))
+                        .onErrorResume(ex -> Mono.empty()))
+                .subscribe();
+    }
+    private record PendingKey(String bindingName,Object key){}
+    private record PendingEvent(MicroEvent event,List<Sinks.One<Void>> waiters){}
+}
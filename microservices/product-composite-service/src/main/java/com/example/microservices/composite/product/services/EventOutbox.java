@@ -0,0 +1,402 @@
+package com.example.microservices.composite.product.services;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.annotation.PreDestroy;
+import org.example.api.event.MicroEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Append-only, segmented log of events that are relayed to the bindings in the background. An event is acknowledged
+ * as soon as it is appended, the relay sends it at least once, also after a restart, and moves a checkpoint forward
+ * after each successfully sent batch. The events of one append are stored as one record, so they are relayed all
+ * together or not at all. The data of an event is stored with its class and read back as that class.
+ * A record that still fails after app.outbox.maxAttempts attempts, retried with an exponential backoff, is moved to
+ * the parked.log file of the outbox directory with the events that failed, so that the records behind it are relayed.
+ */
+@Component
+public class EventOutbox {
+    private static final Logger LOG = LoggerFactory.getLogger(EventOutbox.class);
+    // Every record is its payload length and CRC32 followed by the JSON encoded list of events
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String PARKED_FILE = "parked.log";
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentBytes;
+    private final int relayBatchSize;
+    private final Duration relayInterval;
+    private final int maxAttempts;
+    private final Duration maxBackOff;
+    private final boolean fsync;
+    private final ObjectMapper mapper;
+    // Records written before events were grouped hold a single event
+    private final ObjectReader recordReader;
+    private final EventPublisher eventPublisher;
+    private final Scheduler publishEventScheduler;
+    private FileChannel writeChannel;
+    private long writeSegment;
+    private long writePosition;
+    private long readSegment;
+    private long readPosition;
+    // The record at the checkpoint that failed to be relayed, only used by the relay
+    private long failedSegment = -1;
+    private long failedPosition = -1;
+    private int failedAttempts;
+    private long nextAttemptNanos;
+    private Scheduler relayScheduler;
+    private Disposable relay;
+    @Autowired
+    public EventOutbox(
+            @Value("${app.outbox.enabled:false}") boolean enabled,
+            @Value("${app.outbox.directory:/tmp/product-composite-outbox}") String directory,
+            @Value("${app.outbox.segmentBytes:16777216}") long segmentBytes,
+            @Value("${app.outbox.relayBatchSize:500}") int relayBatchSize,
+            @Value("${app.outbox.relayIntervalMs:100}") long relayIntervalMs,
+            @Value("${app.outbox.maxAttempts:15}") int maxAttempts,
+            @Value("${app.outbox.maxBackOffMs:60000}") long maxBackOffMs,
+            @Value("${app.outbox.fsync:true}") boolean fsync,
+            ObjectMapper mapper,
+            EventPublisher eventPublisher,
+            @Qualifier("publishEventScheduler") Scheduler publishEventScheduler
+    ){
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.segmentBytes = segmentBytes;
+        this.relayBatchSize = relayBatchSize;
+        this.relayInterval = Duration.ofMillis(relayIntervalMs);
+        this.maxAttempts = maxAttempts;
+        this.maxBackOff = Duration.ofMillis(maxBackOffMs);
+        this.fsync = fsync;
+        this.mapper = mapper;
+        this.recordReader = mapper.readerForListOf(StoredEvent.class)
+                .with(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY);
+        this.eventPublisher = eventPublisher;
+        this.publishEventScheduler = publishEventScheduler;
+        if (enabled){
+            recover();
+            relayScheduler = Schedulers.newSingle("outbox-relay");
+            relay = Flux.interval(relayInterval,relayScheduler)
+                    .onBackpressureDrop()
+                    .concatMap(tick -> drain(),1)
+                    .subscribe();
+        }
+        LOG.info("Creates an event outbox, enabled = {}, directory = {}, fsync = {}",enabled,directory,fsync);
+    }
+    public boolean isEnabled(){
+        return enabled;
+    }
+    public Mono<Void> append(String bindingName,MicroEvent event){
+        return append(List.of(new OutboxRecord(bindingName,event)));
+    }
+    /**
+     * Appends the events as one record with a single fsync, the relay sends them in the given order.
+     */
+    public Mono<Void> append(List<OutboxRecord> events){
+        return Mono.fromRunnable(() -> write(events))
+                .subscribeOn(publishEventScheduler)
+                .then();
+    }
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (relay != null){
+            relay.dispose();
+            relayScheduler.dispose();
+        }
+        if (writeChannel != null){
+            writeChannel.close();
+        }
+    }
+    private synchronized void write(List<OutboxRecord> events){
+        try{
+            byte[] payload = mapper.writeValueAsBytes(events.stream().map(StoredEvent::of).toList());
+            ByteBuffer record = frame(payload);
+            if (writePosition > 0 && writePosition + record.remaining() > segmentBytes){
+                openWriteSegment(writeSegment + 1);
+            }
+            while (record.hasRemaining()){
+                writeChannel.write(record);
+            }
+            if (fsync){
+                writeChannel.force(false);
+            }
+            writePosition += RECORD_HEADER_SIZE + payload.length;
+            LOG.debug("Appended {} events to outbox segment {}",events.size(),writeSegment);
+        }catch (IOException ex){
+            throw new UncheckedIOException("Failed to append event to the outbox",ex);
+        }
+    }
+    private Mono<Void> drain(){
+        if (failedAttempts > 0 && System.nanoTime() < nextAttemptNanos){
+            return Mono.empty();
+        }
+        return relayBatch()
+                .expand(full -> full ? relayBatch() : Mono.empty())
+                .then()
+                .onErrorResume(ex -> {
+                    LOG.warn("Outbox relay failed, retries from the last checkpoint: {}",ex.toString());
+                    return Mono.empty();
+                });
+    }
+    /**
+     * Sends the next batch and moves the checkpoint, emits true if the batch was full and more records may be waiting.
+     */
+    private Mono<Boolean> relayBatch(){
+        return Mono.defer(() -> {
+            List<Entry> batch;
+            try{
+                batch = readBatch();
+            }catch (IOException ex){
+                return Mono.error(ex);
+            }
+            if (batch.isEmpty()){
+                return Mono.empty();
+            }
+            return Flux.fromIterable(batch)
+                    .flatMapSequential(entry -> Mono.fromCallable(() -> entry.event().toRecord(mapper))
+                                    .flatMap(record -> eventPublisher.publish(record.bindingName(),record.event()))
+                                    .then(Mono.just(new Sent(entry,null)))
+                                    .onErrorResume(ex -> Mono.just(new Sent(entry,ex))),
+                            relayBatchSize)
+                    .collectList()
+                    .flatMap(sent -> Mono.fromCallable(() -> settle(sent)));
+        });
+    }
+    /**
+     * Moves the checkpoint past the records that were sent. A record with a failed event stays at the checkpoint and
+     * is retried with a backoff, until it is parked after maxAttempts attempts.
+     */
+    private boolean settle(List<Sent> batch) throws IOException {
+        Sent failed = batch.stream().filter(sent -> sent.error() != null).findFirst().orElse(null);
+        if (failed == null){
+            Entry last = batch.get(batch.size() - 1).entry();
+            checkpoint(last.segment(),last.endPosition());
+            failedAttempts = 0;
+            return batch.size() >= relayBatchSize;
+        }
+        Entry entry = failed.entry();
+        checkpoint(entry.segment(),entry.startPosition());
+        if (entry.segment() != failedSegment || entry.startPosition() != failedPosition){
+            failedSegment = entry.segment();
+            failedPosition = entry.startPosition();
+            failedAttempts = 0;
+        }
+        failedAttempts++;
+        if (failedAttempts < maxAttempts){
+            Duration backOff = relayInterval.multipliedBy(1L << Math.min(failedAttempts - 1,20));
+            backOff = backOff.compareTo(maxBackOff) > 0 ? maxBackOff : backOff;
+            nextAttemptNanos = System.nanoTime() + backOff.toNanos();
+            LOG.warn("Outbox relay of a {} event to {} failed {} times, retries in {} ms: {}",
+                    entry.event().event().getEventType(),entry.event().bindingName(),failedAttempts,backOff.toMillis(),
+                    failed.error().toString());
+            return false;
+        }
+        List<StoredEvent> parked = batch.stream()
+                .filter(sent -> sent.error() != null && sent.entry().segment() == entry.segment()
+                        && sent.entry().startPosition() == entry.startPosition())
+                .map(sent -> sent.entry().event())
+                .toList();
+        park(parked);
+        LOG.error("Parks {} events of an outbox record that failed {} times in {}, last error: {}",
+                parked.size(),failedAttempts,directory.resolve(PARKED_FILE),failed.error().toString());
+        checkpoint(entry.segment(),entry.endPosition());
+        failedAttempts = 0;
+        return true;
+    }
+    private void park(List<StoredEvent> events) throws IOException {
+        ByteBuffer record = frame(mapper.writeValueAsBytes(events));
+        try (FileChannel channel = FileChannel.open(directory.resolve(PARKED_FILE),CREATE,WRITE,APPEND)){
+            while (record.hasRemaining()){
+                channel.write(record);
+            }
+            channel.force(false);
+        }
+    }
+    private List<Entry> readBatch() throws IOException {
+        List<Entry> batch = new ArrayList<>();
+        long segment = readSegment;
+        long position = readPosition;
+        while (batch.size() < relayBatchSize){
+            long[] mark = writeMark();
+            long limit = (segment == mark[0]) ? mark[1] : Files.size(segmentPath(segment));
+            if (position >= limit){
+                if (segment >= mark[0]){
+                    break;
+                }
+                segment++;
+                position = 0;
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(segmentPath(segment),READ)){
+                while (position < limit && batch.size() < relayBatchSize){
+                    byte[] payload = readRecord(channel,position,limit);
+                    if (payload == null){
+                        throw new IOException("Corrupt outbox record in segment " + segment + " at " + position);
+                    }
+                    long start = position;
+                    position += RECORD_HEADER_SIZE + payload.length;
+                    // Records are never split over batches, so the checkpoint always lands on a record boundary
+                    List<StoredEvent> events = recordReader.readValue(payload);
+                    for (StoredEvent event : events){
+                        batch.add(new Entry(event,segment,start,position));
+                    }
+                }
+            }
+        }
+        return batch;
+    }
+    private byte[] readRecord(FileChannel channel,long position,long limit) throws IOException {
+        if (position + RECORD_HEADER_SIZE > limit){
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        readFully(channel,header,position);
+        int length = header.getInt(0);
+        int crc = header.getInt(4);
+        if (length < 0 || position + RECORD_HEADER_SIZE + length > limit){
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(channel,payload,position + RECORD_HEADER_SIZE);
+        return crc(payload.array()) == crc ? payload.array() : null;
+    }
+    private void readFully(FileChannel channel,ByteBuffer buffer,long position) throws IOException {
+        while (buffer.hasRemaining()){
+            if (channel.read(buffer,position + buffer.position()) < 0){
+                throw new IOException("Unexpected end of outbox segment");
+            }
+        }
+    }
+    private synchronized long[] writeMark(){
+        return new long[]{writeSegment,writePosition};
+    }
+    private void checkpoint(long segment,long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(16).putLong(segment).putLong(position).flip();
+        Path tmp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp,CREATE,WRITE,TRUNCATE_EXISTING)){
+            channel.write(buffer);
+            channel.force(true);
+        }
+        Files.move(tmp,directory.resolve(CHECKPOINT_FILE),StandardCopyOption.ATOMIC_MOVE);
+        for (long consumed = readSegment; consumed < segment; consumed++){
+            Files.deleteIfExists(segmentPath(consumed));
+        }
+        readSegment = segment;
+        readPosition = position;
+    }
+    private void recover(){
+        try{
+            Files.createDirectories(directory);
+            List<Long> segments;
+            try (Stream<Path> files = Files.list(directory)){
+                segments = files.map(p -> p.getFileName().toString())
+                        .filter(name -> name.endsWith(".log"))
+                        .map(name -> Long.parseLong(name.substring(0,name.length() - 4)))
+                        .sorted()
+                        .toList();
+            }
+            Path checkpoint = directory.resolve(CHECKPOINT_FILE);
+            if (Files.exists(checkpoint)){
+                ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(checkpoint));
+                readSegment = buffer.getLong();
+                readPosition = buffer.getLong();
+            }else{
+                readSegment = segments.isEmpty() ? 1 : segments.get(0);
+                readPosition = 0;
+            }
+            openWriteSegment(segments.isEmpty() ? readSegment : segments.get(segments.size() - 1));
+            truncateTornRecord();
+            LOG.info("Recovered outbox with {} segments, relays from segment {} position {}",
+                    segments.size(),readSegment,readPosition);
+        }catch (IOException ex){
+            throw new UncheckedIOException("Failed to recover the outbox in " + directory,ex);
+        }
+    }
+    private void truncateTornRecord() throws IOException {
+        // A crash in the middle of an append leaves a partial record at the end of the last segment
+        long size = writeChannel.size();
+        long position = 0;
+        while (position < size){
+            byte[] payload = readRecord(writeChannel,position,size);
+            if (payload == null){
+                LOG.warn("Truncates a partial record at position {} of outbox segment {}",position,writeSegment);
+                writeChannel.truncate(position);
+                break;
+            }
+            position += RECORD_HEADER_SIZE + payload.length;
+        }
+        writePosition = position;
+        writeChannel.position(position);
+    }
+    private void openWriteSegment(long segment) throws IOException {
+        if (writeChannel != null){
+            writeChannel.close();
+        }
+        writeChannel = FileChannel.open(segmentPath(segment),CREATE,READ,WRITE);
+        writeChannel.position(writeChannel.size());
+        writeSegment = segment;
+        writePosition = writeChannel.size();
+    }
+    private Path segmentPath(long segment){
+        return directory.resolve(String.format("%020d.log",segment));
+    }
+    private static ByteBuffer frame(byte[] payload){
+        return ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length)
+                .putInt(payload.length)
+                .putInt(crc(payload))
+                .put(payload)
+                .flip();
+    }
+    private static int crc(byte[] bytes){
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+    public record OutboxRecord(String bindingName,MicroEvent event){}
+    /**
+     * An event as it is stored, with the class of its data. Records written before the class was stored have no
+     * dataType, their data is relayed as it was read.
+     */
+    record StoredEvent(String bindingName,String dataType,MicroEvent event){
+        static StoredEvent of(OutboxRecord record){
+            Object data = record.event().getData();
+            return new StoredEvent(record.bindingName(),data == null ? null : data.getClass().getName(),record.event());
+        }
+        OutboxRecord toRecord(ObjectMapper mapper) throws ClassNotFoundException {
+            if (dataType == null || event.getData() == null){
+                return new OutboxRecord(bindingName,event);
+            }
+            Object data = mapper.convertValue(event.getData(),Class.forName(dataType));
+            return new OutboxRecord(bindingName,new MicroEvent(event.getEventId(),event.getEventType(),event.getKey(),
+                    data,event.getEventCreatedAt()));
+        }
+    }
+    record Entry(StoredEvent event,long segment,long startPosition,long endPosition){}
+    record Sent(Entry entry,Throwable error){}
+}
@@ -0,0 +1,167 @@
+package com.example.microservices.composite.product.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.api.event.MicroEvent;
+import org.example.api.exceptions.ServiceUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class EventPublisher {
+    private static final Logger LOG = LoggerFactory.getLogger(EventPublisher.class);
+    private final StreamBridge streamBridge;
+    private final Scheduler publishEventScheduler;
+    private final MeterRegistry meterRegistry;
+    private final int bufferSize;
+    private final int batchSize;
+    private final Duration linger;
+    private final boolean confirms;
+    private final long confirmTimeoutMs;
+    private final ConcurrentMap<String,Lane> lanes = new ConcurrentHashMap<>();
+    @Autowired
+    public EventPublisher(
+            StreamBridge streamBridge,
+            @Qualifier("publishEventScheduler") Scheduler publishEventScheduler,
+            MeterRegistry meterRegistry,
+            @Value("${app.eventPublisher.bufferSize:1024}") int bufferSize,
+            @Value("${app.eventPublisher.batchSize:100}") int batchSize,
+            @Value("${app.eventPublisher.lingerMs:5}") long lingerMs,
+            @Value("${app.eventPublisher.confirms:false}") boolean confirms,
+            @Value("${app.eventPublisher.confirmTimeoutMs:5000}") long confirmTimeoutMs
+    ){
+        this.streamBridge = streamBridge;
+        this.publishEventScheduler = publishEventScheduler;
+        this.meterRegistry = meterRegistry;
+        this.bufferSize = bufferSize;
+        this.batchSize = batchSize;
+        this.linger = Duration.ofMillis(lingerMs);
+        this.confirms = confirms;
+        this.confirmTimeoutMs = confirmTimeoutMs;
+        LOG.info("Creates an event publisher with bufferSize = {}, batchSize = {}, linger = {}ms, confirms = {}",
+                bufferSize,batchSize,lingerMs,confirms);
+    }
+    /**
+     * Queues the event for the binding and completes once it is sent, or acknowledged by the broker if confirms are
+     * enabled. Fails fast with a {@link ServiceUnavailableException} when the binding already has bufferSize events
+     * waiting, instead of piling up work on the publish scheduler.
+     */
+    public Mono<Void> publish(String bindingName,MicroEvent event){
+        return Mono.defer(() -> {
+            Lane lane = lanes.computeIfAbsent(bindingName,Lane::new);
+            PendingEvent pending = new PendingEvent(event,Sinks.one());
+            if (!lane.offer(pending)){
+                return Mono.error(new ServiceUnavailableException("Too many events waiting to be published to " + bindingName));
+            }
+            return pending.result().asMono();
+        });
+    }
+    private record PendingEvent(MicroEvent event,Sinks.One<Void> result){}
+    private class Lane {
+        private final String bindingName;
+        private final AtomicInteger pending = new AtomicInteger();
+        private final Sinks.Many<PendingEvent> sink = Sinks.many().unicast().onBackpressureBuffer();
+        Lane(String bindingName){
+            this.bindingName = bindingName;
+            Gauge.builder("composite.events.pending",pending,AtomicInteger::get)
+                    .description("Number of events waiting to be published or acknowledged")
+                    .tag("binding",bindingName)
+                    .register(meterRegistry);
+            // Batches of one binding are sent one after the other to keep the order of the events. The fair
+            // bufferTimeout holds a batch back while the broker is slow instead of failing for lack of demand, and a
+            // failed batch only fails its own events, so the lane keeps running.
+            sink.asFlux()
+                    .bufferTimeout(batchSize,linger,true)
+                    .concatMap(batch -> Mono.fromRunnable(() -> send(batch))
+                            .subscribeOn(publishEventScheduler)
+                            .onErrorResume(ex -> {
+                                batch.forEach(event -> complete(event,ex));
+                                return Mono.empty();
+                            }))
+                    .subscribe(null,this::terminated);
+        }
+        private void terminated(Throwable error){
+            // Not expected, but a new lane is created by the next publish instead of failing every publish from now on
+            LOG.error("Publishing lane of {} terminated, creates a new one for the next event: {}",bindingName,error.toString());
+            lanes.remove(bindingName,this);
+        }
+        boolean offer(PendingEvent event){
+            // The pending count bounds the buffer, the sink queue itself is unbounded
+            if (pending.incrementAndGet() > bufferSize){
+                pending.decrementAndGet();
+                return false;
+            }
+            Sinks.EmitResult result;
+            synchronized (this){
+                result = sink.tryEmitNext(event);
+            }
+            if (result.isFailure()){
+                pending.decrementAndGet();
+                LOG.warn("Failed to queue a {} event for {}: {}",event.event().getEventType(),bindingName,result);
+                return false;
+            }
+            return true;
+        }
+        private void send(List<PendingEvent> batch){
+            LOG.debug("Sending a batch of {} events to {}",batch.size(),bindingName);
+            for (PendingEvent event : batch){
+                try{
+                    CorrelationData correlation = confirms ? new CorrelationData(UUID.randomUUID().toString()) : null;
+                    if (!streamBridge.send(bindingName,toMessage(event.event(),correlation))){
+                        complete(event,new IllegalStateException("Failed to send event to " + bindingName));
+                    }else if (correlation == null){
+                        complete(event,null);
+                    }else{
+                        correlation.getFuture()
+                                .orTimeout(confirmTimeoutMs,TimeUnit.MILLISECONDS)
+                                .whenComplete((confirm,ex) -> complete(event,
+                                        ex != null ? ex
+                                        : !confirm.isAck() ? new IllegalStateException("Event to " + bindingName + " was not acknowledged: " + confirm.getReason())
+                                        : null));
+                    }
+                }catch (RuntimeException ex){
+                    complete(event,ex);
+                }
+            }
+        }
+        private void complete(PendingEvent event,Throwable error){
+            Sinks.EmitResult result = (error == null) ? event.result().tryEmitEmpty() : event.result().tryEmitError(error);
+            // An event is completed once, a second completion after a failed batch must not count it twice
+            if (result.isSuccess()){
+                pending.decrementAndGet();
+                if (error != null){
+                    LOG.warn("Publishing a {} event to {} failed: {}",event.event().getEventType(),bindingName,error.toString());
+                }
+            }
+        }
+    }
+    private Message<MicroEvent> toMessage(MicroEvent event,CorrelationData correlation){
+        MessageBuilder<MicroEvent> builder = MessageBuilder.withPayload(event)
+                .setHeader("partitionKey",event.getKey());
+        if (correlation != null){
+            // Picked up by the Rabbit binder when the producer binding has useConfirmHeader set
+            builder.setHeader(AmqpHeaders.PUBLISH_CONFIRM_CORRELATION,correlation);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.microservices.composite.product.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.example.api.core.product.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.*;
+
+@Component
+public class LastKnownGoodProductStore {
+    private static final Logger LOG = LoggerFactory.getLogger(LastKnownGoodProductStore.class);
+    // File header: magic, layout version and slot count, the file is rebuilt when one of them does not match
+    private static final int MAGIC = 0x4C4B4750;
+    private static final int VERSION = 2;
+    private static final int FILE_HEADER_SIZE = 16;
+    // Fixed size slots: productId, weight, name length followed by the UTF-8 encoded name
+    private static final int SLOT_SIZE = 256;
+    private static final int HEADER_SIZE = 12;
+    private static final int NULL_NAME = -1;
+    // Slot states below any valid productId. A removed slot stays a tombstone so that the probe chains through it
+    // still reach the products stored behind it.
+    private static final int EMPTY = 0;
+    private static final int TOMBSTONE = -1;
+    private final boolean enabled;
+    private final Cache<Integer, Product> cache;
+    private final int slots;
+    private MappedByteBuffer buffer;
+    @Autowired
+    public LastKnownGoodProductStore(
+            @Value("${app.lastKnownGood.enabled:true}") boolean enabled,
+            @Value("${app.lastKnownGood.maxSize:10000}") int maxSize,
+            @Value("${app.lastKnownGood.file:}") String file,
+            MeterRegistry meterRegistry
+    ){
+        this.enabled = enabled;
+        // Open addressing, twice the slots of the products kept in memory keeps the probe chains short
+        this.slots = 2 * maxSize;
+        if (FILE_HEADER_SIZE + (long) slots * SLOT_SIZE > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("app.lastKnownGood.maxSize " + maxSize + " does not fit in a mapped file");
+        }
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                // Products evicted from memory are removed from the file as well, so that it never fills up
+                .evictionListener((Integer productId,Product product,RemovalCause cause) -> clear(productId))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry,cache,"lastKnownGoodProducts");
+        if (enabled && !file.isBlank()){
+            open(Path.of(file));
+        }
+        LOG.info("Creates a last known good product store, enabled = {}, maxSize = {}, file = {}",
+                enabled,maxSize,buffer != null ? file : "none");
+    }
+    public void put(Product product){
+        if (!enabled){
+            return;
+        }
+        Product copy = new Product(product.getProductId(),product.getName(),product.getWeight(),product.getServiceAddress());
+        cache.put(copy.getProductId(),copy);
+        if (buffer != null){
+            write(copy);
+        }
+    }
+    /**
+     * Returns a copy of the last successfully fetched product marked as stale, or null if the product is unknown.
+     */
+    public Product get(int productId){
+        if (!enabled){
+            return null;
+        }
+        Product product = cache.getIfPresent(productId);
+        if (product == null){
+            return null;
+        }
+        Product stale = new Product(product.getProductId(),product.getName(),product.getWeight(),product.getServiceAddress());
+        stale.setStale(true);
+        return stale;
+    }
+    public void remove(int productId){
+        if (!enabled){
+            return;
+        }
+        cache.invalidate(productId);
+        if (buffer != null){
+            clear(productId);
+        }
+    }
+    /**
+     * Reads the products of an existing file and rewrites them into a fresh file of the current layout. That drops
+     * the tombstones and adapts the file to a changed slot count, a file of an unknown layout is discarded.
+     * The fresh file is built next to the existing one and only replaces it once it is complete and synced, so a
+     * crash while it is rebuilt keeps the existing products.
+     */
+    private synchronized void open(Path path){
+        List<Product> products = new ArrayList<>();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try{
+            if (Files.exists(path)){
+                readFile(path,products);
+            }
+            try (FileChannel channel = FileChannel.open(tmp,CREATE,READ,WRITE,TRUNCATE_EXISTING)){
+                // The mapping stays valid after the channel is closed and the file is moved
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE,0,FILE_HEADER_SIZE + (long) slots * SLOT_SIZE);
+                buffer.putInt(0,MAGIC);
+                buffer.putInt(4,VERSION);
+                buffer.putInt(8,slots);
+                products.forEach(this::put);
+                buffer.force();
+                channel.force(true);
+            }
+            Files.move(tmp,path,StandardCopyOption.ATOMIC_MOVE);
+        }catch (IOException ex){
+            LOG.warn("Failed to map last known good file {}, keeps products in memory only: {}",path,ex.toString());
+            buffer = null;
+            return;
+        }
+        LOG.info("Loaded {} last known good products from file",cache.estimatedSize());
+    }
+    private static void readFile(Path path,List<Product> products) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,READ)){
+            if (channel.size() < FILE_HEADER_SIZE){
+                return;
+            }
+            MappedByteBuffer existing = channel.map(FileChannel.MapMode.READ_ONLY,0,channel.size());
+            int fileSlots = existing.getInt(8);
+            if (existing.getInt(0) == MAGIC && existing.getInt(4) == VERSION
+                    && fileSlots > 0 && FILE_HEADER_SIZE + (long) fileSlots * SLOT_SIZE <= channel.size()){
+                read(existing,fileSlots,products);
+            }else{
+                LOG.warn("Discards last known good file {} of an unknown layout",path);
+            }
+        }
+    }
+    private static void read(MappedByteBuffer existing,int fileSlots,List<Product> products){
+        for (int slot = 0; slot < fileSlots; slot++){
+            int offset = slotOffset(slot);
+            int productId = existing.getInt(offset);
+            if (productId < 1){
+                continue;
+            }
+            int weight = existing.getInt(offset + 4);
+            int nameLength = existing.getInt(offset + 8);
+            if (nameLength > SLOT_SIZE - HEADER_SIZE || nameLength < NULL_NAME){
+                LOG.warn("Skips corrupt last known good slot {} for productId: {}",slot,productId);
+                continue;
+            }
+            String name = null;
+            if (nameLength != NULL_NAME){
+                byte[] bytes = new byte[nameLength];
+                existing.get(offset + HEADER_SIZE,bytes);
+                name = new String(bytes,StandardCharsets.UTF_8);
+            }
+            products.add(new Product(productId,name,weight,null));
+        }
+    }
+    private synchronized void write(Product product){
+        if (buffer == null){
+            return;
+        }
+        byte[] name = (product.getName() == null) ? null : product.getName().getBytes(StandardCharsets.UTF_8);
+        if (name != null && name.length > SLOT_SIZE - HEADER_SIZE){
+            LOG.debug("Name of productId: {} does not fit in a slot, keeps it in memory only",product.getProductId());
+            return;
+        }
+        int slot = findSlot(product.getProductId(),true);
+        if (slot < 0){
+            LOG.debug("No free slot for productId: {}, keeps it in memory only",product.getProductId());
+            return;
+        }
+        int offset = slotOffset(slot);
+        // Mark the slot as a tombstone while it is rewritten so that a crash never leaves a half written product
+        buffer.putInt(offset,TOMBSTONE);
+        buffer.putInt(offset + 4,product.getWeight());
+        buffer.putInt(offset + 8,(name == null) ? NULL_NAME : name.length);
+        if (name != null){
+            buffer.put(offset + HEADER_SIZE,name);
+        }
+        buffer.putInt(offset,product.getProductId());
+    }
+    private synchronized void clear(int productId){
+        if (buffer == null){
+            return;
+        }
+        int slot = findSlot(productId,false);
+        if (slot >= 0){
+            buffer.putInt(slotOffset(slot),TOMBSTONE);
+        }
+    }
+    /**
+     * Linear probing from the home slot of the product. Returns the slot that holds the product, else for an insert
+     * the first reusable slot on the way, or -1.
+     */
+    private int findSlot(int productId,boolean insert){
+        int reusable = -1;
+        int home = Math.floorMod(productId,slots);
+        for (int probe = 0; probe < slots; probe++){
+            int slot = (home + probe) % slots;
+            int stored = buffer.getInt(slotOffset(slot));
+            if (stored == productId){
+                return slot;
+            }
+            if (stored == TOMBSTONE && reusable < 0){
+                reusable = slot;
+            }else if (stored == EMPTY){
+                if (!insert){
+                    return -1;
+                }
+                return reusable >= 0 ? reusable : slot;
+            }
+        }
+        return insert ? reusable : -1;
+    }
+    private static int slotOffset(int slot){
+        return Math.toIntExact(FILE_HEADER_SIZE + (long) slot * SLOT_SIZE);
+    }
+}
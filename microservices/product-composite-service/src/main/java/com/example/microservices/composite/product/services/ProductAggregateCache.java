@@ -0,0 +1,105 @@
+package com.example.microservices.composite.product.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.example.api.composite.product.ProductAggregate;
+import org.example.api.composite.product.ServiceAddress;
+import org.example.util.http.ServiceUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+@Component
+public class ProductAggregateCache {
+    private static final Logger LOG = LoggerFactory.getLogger(ProductAggregateCache.class);
+    private static final String DEGRADED_KEY = ProductAggregateCache.class.getName() + ".degraded";
+    private final boolean enabled;
+    private final ServiceUtil serviceUtil;
+    private final Duration invalidationDelay;
+    private final Cache<Integer, ProductAggregate> cache;
+    // Bumped on every invalidation so that a load started before an event can not re-insert stale data
+    private final AtomicLong invalidations = new AtomicLong();
+    @Autowired
+    public ProductAggregateCache(
+            @Value("${app.aggregateCache.enabled:false}") boolean enabled,
+            @Value("${app.aggregateCache.maxSize:10000}") long maxSize,
+            @Value("${app.aggregateCache.ttlSeconds:60}") long ttlSeconds,
+            @Value("${app.aggregateCache.invalidationDelayMs:1000}") long invalidationDelayMs,
+            MeterRegistry meterRegistry,
+            ServiceUtil serviceUtil
+    ){
+        this.enabled = enabled;
+        this.serviceUtil = serviceUtil;
+        this.invalidationDelay = Duration.ofMillis(invalidationDelayMs);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry,cache,"productAggregates");
+        LOG.info("Creates a product aggregate cache, enabled = {}, maxSize = {}, ttl = {}s",enabled,maxSize,ttlSeconds);
+    }
+    /**
+     * Completes empty in place of a failed downstream call and keeps the aggregate that is being loaded with it out of
+     * the cache, a fallback must not outlive the failure.
+     */
+    public static <T> Flux<T> emptyFallback(){
+        return Flux.deferContextual(context -> {
+            context.<AtomicBoolean>getOrEmpty(DEGRADED_KEY).ifPresent(degraded -> degraded.set(true));
+            return Flux.empty();
+        });
+    }
+    public Mono<ProductAggregate> get(int productId, Supplier<Mono<ProductAggregate>> loader){
+        if (!enabled){
+            return loader.get();
+        }
+        return Mono.defer(() -> {
+            ProductAggregate cached = cache.getIfPresent(productId);
+            if (cached != null){
+                LOG.debug("Found product aggregate for productId: {} in cache",productId);
+                return Mono.just(withServiceAddress(cached,
+                        new ServiceAddress(serviceUtil.getServiceAddress(),"","","")));
+            }
+            long generation = invalidations.get();
+            AtomicBoolean degraded = new AtomicBoolean();
+            return loader.get()
+                    .doOnNext(aggregate -> {
+                        // Stale aggregates are built from the circuit breaker fallback and must not outlive it
+                        if (!aggregate.isStale() && !degraded.get() && invalidations.get() == generation){
+                            // The addresses of the instances that served this load do not apply to later hits
+                            cache.put(productId,withServiceAddress(aggregate,null));
+                        }
+                    })
+                    .contextWrite(Context.of(DEGRADED_KEY,degraded));
+        });
+    }
+    private static ProductAggregate withServiceAddress(ProductAggregate aggregate,ServiceAddress serviceAddress){
+        return new ProductAggregate(aggregate.getProductId(),aggregate.getName(),aggregate.getWeight(),
+                aggregate.getRecommendations(),aggregate.getReviews(),serviceAddress,aggregate.isStale());
+    }
+    public void invalidate(int productId){
+        if (!enabled){
+            return;
+        }
+        evict(productId);
+        // The core services consume the same event concurrently, evict once more after they had time to apply it
+        Mono.delay(invalidationDelay).subscribe(t -> evict(productId));
+    }
+    private void evict(int productId){
+        LOG.debug("Invalidates cached product aggregate for productId: {}",productId);
+        invalidations.incrementAndGet();
+        cache.invalidate(productId);
+    }
+}
@@ -5,6 +5,7 @@ import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import io.github.resilience4j.retry.annotation.Retry;
 import io.github.resilience4j.timelimiter.annotation.TimeLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.http.client.methods.HttpHead;
 import org.example.api.core.product.Product;
 import org.example.api.core.product.ProductService;
@@ -21,22 +22,22 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.actuate.health.Health;
-import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.integration.support.MessageBuilder;
-import org.springframework.messaging.Message;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Scheduler;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 import java.util.logging.Level;
 
 import static reactor.core.publisher.Flux.empty;
@@ -49,40 +50,61 @@ public class ProductCompositeIntegration implements ProductService,
     private static final String RECOMMENDATION_SERVICE_URL = "http://recommendation";
     private static final String REVIEW_SERVICE_URL = "http://review";
     private final WebClient webClient;
+    private final WebClient hedgeWebClient;
     private final ObjectMapper mapper;
-    private final StreamBridge streamBridge;
-    private final Scheduler publishEventScheduler;
+    private final EventPublisher eventPublisher;
+    private final EventOutbox outbox;
+    private final EventCoalescer eventCoalescer;
     private final ServiceUtil serviceUtil;
+    private final RequestCoalescer<String,Product> productCoalescer;
+    private final RequestCoalescer<String,Recommendation> recommendationCoalescer;
+    private final RequestCoalescer<String,Review> reviewCoalescer;
+    private final LastKnownGoodProductStore lastKnownGood;
+    private final RequestHedger hedger;
+    private final AdaptiveConcurrencyLimiter limiter;
     @Autowired
     public ProductCompositeIntegration(
-            @Qualifier("publishEventScheduler")Scheduler publishEventScheduler,
+            EventPublisher eventPublisher,
+            EventOutbox outbox,
+            EventCoalescer eventCoalescer,
             WebClient webClient,
+            @Qualifier("hedgeWebClient") WebClient hedgeWebClient,
             ObjectMapper mapper,
-            StreamBridge streamBridge,
-            ServiceUtil serviceUtil
+            ServiceUtil serviceUtil,
+            MeterRegistry meterRegistry,
+            @Value("${app.coalescing.enabled:true}") boolean coalescingEnabled,
+            LastKnownGoodProductStore lastKnownGood,
+            RequestHedger hedger,
+            AdaptiveConcurrencyLimiter limiter
     ){
-        this.publishEventScheduler = publishEventScheduler;
+        this.eventPublisher = eventPublisher;
+        this.outbox = outbox;
+        this.eventCoalescer = eventCoalescer;
         this.webClient = webClient;
+        this.hedgeWebClient = hedgeWebClient;
         this.mapper =mapper;
-        this.streamBridge = streamBridge;
         this.serviceUtil = serviceUtil;
+        this.productCoalescer = new RequestCoalescer<>("product",coalescingEnabled,meterRegistry);
+        this.recommendationCoalescer = new RequestCoalescer<>("recommendation",coalescingEnabled,meterRegistry);
+        this.reviewCoalescer = new RequestCoalescer<>("review",coalescingEnabled,meterRegistry);
+        this.lastKnownGood = lastKnownGood;
+        this.hedger = hedger;
+        this.limiter = limiter;
     }
 
     @Override
     public Mono<Product> createProduct(Product body) {
-        return Mono.fromCallable(() -> {
-            sendMessage("products-out-0",
-                    new MicroEvent<Integer,Product>(MicroEvent.Type.CREATE,
-                            body.getProductId(),body));
-            return body;
-        }).subscribeOn(publishEventScheduler);
+        return publish("products-out-0",
+                new MicroEvent<Integer,Product>(MicroEvent.Type.CREATE,
+                        body.getProductId(),body))
+                .thenReturn(body);
     }
 
     @Override
     public Mono<Void> deleteProduct(int productId) {
-        return Mono.fromRunnable(() -> sendMessage("products-out-0",
-                new MicroEvent(MicroEvent.Type.DELETE,productId,null)))
-                .subscribeOn(publishEventScheduler).then();
+        lastKnownGood.remove(productId);
+        return publish("products-out-0",
+                new MicroEvent(MicroEvent.Type.DELETE,productId,null));
     }
 
     @Retry(name = "product")
@@ -92,14 +114,55 @@ public class ProductCompositeIntegration implements ProductService,
     public Mono<Product> getProduct(HttpHeaders headers,int productId, int delay, int faultPercent) {
         URI url = UriComponentsBuilder.fromUriString(PRODUCT_SERVICE_URL + "/product/{productId}?delay={delay}" +
                 "&faultPercent={faultPercent}").build(productId,delay,faultPercent);
+        return productCoalescer.mono(coalescingKey(headers,productId,delay,faultPercent),() -> {
+            // Fault injected calls are slow or failing on purpose, hedging them would only add load
+            if (delay == 0 && faultPercent == 0){
+                // The hedge goes over a new connection, the pooled one of the slow call leads to the same instance
+                return hedger.hedge("product",() -> callGetProduct(webClient,headers,url),
+                        () -> callGetProduct(hedgeWebClient,headers,url));
+            }
+            return callGetProduct(webClient,headers,url);
+        });
+    }
+    private Mono<Product> callGetProduct(WebClient client,HttpHeaders headers,URI url){
         LOG.debug("Will call the getProduct API on URL: {}",url);
-        return webClient.get().uri(url)
+        return limiter.mono("product",() -> client.get().uri(url)
                 .headers(h -> h.addAll(headers))
                 .retrieve()
                 .bodyToMono(Product.class)
                 .log(LOG.getName(), Level.FINE)
+                .doOnNext(lastKnownGood::put)
                 .onErrorMap(WebClientResponseException.class,
-                        ex -> handleException(ex));
+                        ex -> handleException(ex)));
+    }
+    // Shares the product retry, time limiter and circuit breaker with getProduct, both call the same service
+    @Retry(name = "product")
+    @TimeLimiter(name = "product")
+    @CircuitBreaker(name = "product",fallbackMethod = "getProductsFallbackValue")
+    @Override
+    public Flux<Product> getProducts(HttpHeaders headers,List<Integer> productIds) {
+        URI url = UriComponentsBuilder.fromUriString(PRODUCT_SERVICE_URL + "/product")
+                .queryParam("productIds",productIds).build().toUri();
+        LOG.debug("Will call the getProducts API on URL: {}",url);
+        return limiter.flux("product",() -> webClient.get().uri(url)
+                .headers(h -> h.addAll(headers))
+                .retrieve()
+                .bodyToFlux(Product.class)
+                .log(LOG.getName(),Level.FINE)
+                .doOnNext(lastKnownGood::put)
+                .onErrorMap(WebClientResponseException.class,
+                        ex -> handleException(ex)));
+    }
+    private Flux<Product> getProductsFallbackValue(HttpHeaders headers,List<Integer> productIds,CallNotPermittedException ex){
+        LOG.warn("Creating fail-fast fallback products for {} productIds and exception = {}",productIds.size(),ex.toString());
+        // Products without a last-known-good copy are left out, like products that are not found
+        return Flux.fromIterable(productIds)
+                .mapNotNull(productId -> lastKnownGood.get(productId))
+                .doOnNext(product -> {
+                    if (product.getServiceAddress() == null){
+                        product.setServiceAddress(serviceUtil.getServiceAddress());
+                    }
+                });
     }
     private Mono<Product> getProductFallbackValue(HttpHeaders headers,int productId, int delay, int faultPercent, CallNotPermittedException ex){
         LOG.warn("Creating a fail-fast fallback product for productId = {}, delay = {}, faultPercent = {} and exception = {} ",
@@ -107,14 +170,17 @@ public class ProductCompositeIntegration implements ProductService,
         if (productId < 1){
             throw new InvalidInputException("Invalid productId: " + productId);
         }
-        if (productId == 13){
+        Product product = lastKnownGood.get(productId);
+        if (product == null){
             String errMsg = "Product Id: " + productId
                     + " not found in fallback cache!";
             LOG.warn(errMsg);
             throw new NotFoundException(errMsg);
         }
-        return Mono.just(new Product(productId,"Fallback product" +
-                productId,productId,serviceUtil.getServiceAddress()));
+        if (product.getServiceAddress() == null){
+            product.setServiceAddress(serviceUtil.getServiceAddress());
+        }
+        return Mono.just(product);
     }
     private String getErrorMessage(WebClientResponseException ex){
         try{
@@ -127,65 +193,135 @@ public class ProductCompositeIntegration implements ProductService,
 
     @Override
     public Mono<Recommendation> createRecommendation(Recommendation body) {
-        return Mono.fromCallable(() -> {
-            sendMessage("recommendations-out-0",
-                    new MicroEvent(MicroEvent.Type.CREATE,body.getProductId(),body));
-            return body;
-        }).subscribeOn(publishEventScheduler);
+        return publish("recommendations-out-0",
+                new MicroEvent(MicroEvent.Type.CREATE,body.getProductId(),body))
+                .thenReturn(body);
     }
 
     @Override
     public Mono<Void> deleteRecommendations(int productId) {
-        return Mono.fromRunnable(() -> sendMessage("recommendations-out-0",
-                new MicroEvent(MicroEvent.Type.DELETE,productId,null)))
-                .subscribeOn(publishEventScheduler).then();
+        return publish("recommendations-out-0",
+                new MicroEvent(MicroEvent.Type.DELETE,productId,null));
+    }
+
+    @Override
+    public Flux<Recommendation> getRecommendations(HttpHeaders headers,int productId,Integer afterRecommendationId,int pageSize) {
+        URI url = UriComponentsBuilder.fromUriString(RECOMMENDATION_SERVICE_URL + "/recommendation")
+                .queryParam("productId",productId)
+                .queryParamIfPresent("afterRecommendationId",Optional.ofNullable(afterRecommendationId))
+                .queryParamIfPresent("pageSize",Optional.of(pageSize).filter(size -> size > 0))
+                .build().toUri();
+        // The fallback is applied per subscriber, so that every coalesced caller learns that its result is degraded
+        return recommendationCoalescer.flux(coalescingKey(headers,productId,afterRecommendationId,pageSize),() -> {
+            LOG.debug("Will call the getRecommendations API on URL: {}",url);
+            return limiter.flux("recommendation",() -> webClient.get().uri(url)
+                    .headers(h -> h.addAll(headers))
+                    .retrieve()
+                    .bodyToFlux(Recommendation.class)
+                    .log(LOG.getName(),Level.FINE));
+        }).onErrorResume(error -> ProductAggregateCache.emptyFallback());
     }
 
     @Override
-    public Flux<Recommendation> getRecommendations(HttpHeaders headers,int productId) {
-        URI url = UriComponentsBuilder.fromUriString(RECOMMENDATION_SERVICE_URL + "/recommendation?productId={productId}")
-                        .build(productId);
-        LOG.debug("Will call the getRecommendations API on URL: {}",url);
-        return webClient.get().uri(url)
+    public Flux<Recommendation> getRecommendationsByProductIds(HttpHeaders headers,List<Integer> productIds) {
+        URI url = UriComponentsBuilder.fromUriString(RECOMMENDATION_SERVICE_URL + "/recommendation")
+                .queryParam("productIds",productIds).build().toUri();
+        LOG.debug("Will call the getRecommendationsByProductIds API on URL: {}",url);
+        return limiter.flux("recommendation",() -> webClient.get().uri(url)
                 .headers(h -> h.addAll(headers))
                 .retrieve()
                 .bodyToFlux(Recommendation.class)
-                .log(LOG.getName(),Level.FINE)
+                .log(LOG.getName(),Level.FINE))
                 .onErrorResume(error -> empty());
     }
 
     @Override
     public Mono<Review> createReview(Review body) {
-        return Mono.fromCallable(() -> {
-            sendMessage("reviews-out-0",new MicroEvent(MicroEvent.Type.CREATE,
-                    body.getProductId(),body));
-            return body;
-        }).subscribeOn(publishEventScheduler);
+        return publish("reviews-out-0",new MicroEvent(MicroEvent.Type.CREATE,
+                body.getProductId(),body))
+                .thenReturn(body);
+    }
+
+    @Override
+    public Mono<Long> createReviews(Flux<Review> body) {
+        return body.concatMap(this::createReview).count();
     }
 
     @Override
     public Mono<Void> deleteReviews(int productId) {
-        return Mono.fromRunnable(() -> sendMessage("reviews-out-0",
-                new MicroEvent(MicroEvent.Type.DELETE,productId,null)))
-                .subscribeOn(publishEventScheduler).then();
+        return publish("reviews-out-0",
+                new MicroEvent(MicroEvent.Type.DELETE,productId,null));
     }
 
     @Override
-    public Flux<Review> getReviews(HttpHeaders headers,int productId) {
-        URI url = UriComponentsBuilder.fromUriString(REVIEW_SERVICE_URL + "/review?productId={productId}").build(productId);
-        LOG.debug("Will call the getReviews API on URL: {}",url);
-        return webClient.get().uri(url)
+    public Flux<Review> getReviews(HttpHeaders headers,int productId,Integer afterReviewId,int pageSize) {
+        URI url = UriComponentsBuilder.fromUriString(REVIEW_SERVICE_URL + "/review")
+                .queryParam("productId",productId)
+                .queryParamIfPresent("afterReviewId",Optional.ofNullable(afterReviewId))
+                .queryParamIfPresent("pageSize",Optional.of(pageSize).filter(size -> size > 0))
+                .build().toUri();
+        return reviewCoalescer.flux(coalescingKey(headers,productId,afterReviewId,pageSize),() -> {
+            LOG.debug("Will call the getReviews API on URL: {}",url);
+            return limiter.flux("review",() -> webClient.get().uri(url)
+                    .headers(h -> h.addAll(headers))
+                    .retrieve().bodyToFlux(Review.class)
+                    .log(LOG.getName(),Level.FINE));
+        }).onErrorResume(error -> ProductAggregateCache.emptyFallback());
+    }
+    @Override
+    public Flux<Review> getReviewsByProductIds(HttpHeaders headers,List<Integer> productIds) {
+        URI url = UriComponentsBuilder.fromUriString(REVIEW_SERVICE_URL + "/review")
+                .queryParam("productIds",productIds).build().toUri();
+        LOG.debug("Will call the getReviewsByProductIds API on URL: {}",url);
+        return limiter.flux("review",() -> webClient.get().uri(url)
                 .headers(h -> h.addAll(headers))
                 .retrieve().bodyToFlux(Review.class)
-                .log(LOG.getName(),Level.FINE)
+                .log(LOG.getName(),Level.FINE))
                 .onErrorResume(error -> empty());
     }
-    private void sendMessage(String bindingName,MicroEvent event){
-        LOG.debug("Sending a {} message to {}",event.getEventType(),bindingName);
-        Message message = MessageBuilder.withPayload(event)
-                .setHeader("partitionKey",event.getKey())
-                .build();
-        streamBridge.send(bindingName,message);
+    /**
+     * Publishes the events that create a product with its recommendations and reviews.
+     */
+    public Mono<Void> createProductAggregate(Product product,List<Recommendation> recommendations,List<Review> reviews){
+        List<EventOutbox.OutboxRecord> events = new ArrayList<>();
+        events.add(new EventOutbox.OutboxRecord("products-out-0",
+                new MicroEvent(MicroEvent.Type.CREATE,product.getProductId(),product)));
+        recommendations.forEach(recommendation -> events.add(new EventOutbox.OutboxRecord("recommendations-out-0",
+                new MicroEvent(MicroEvent.Type.CREATE,recommendation.getProductId(),recommendation))));
+        reviews.forEach(review -> events.add(new EventOutbox.OutboxRecord("reviews-out-0",
+                new MicroEvent(MicroEvent.Type.CREATE,review.getProductId(),review))));
+        return publishAll(events);
+    }
+    /**
+     * Publishes the events that delete a product with its recommendations and reviews.
+     */
+    public Mono<Void> deleteProductAggregate(int productId){
+        lastKnownGood.remove(productId);
+        return publishAll(List.of(
+                new EventOutbox.OutboxRecord("products-out-0",new MicroEvent(MicroEvent.Type.DELETE,productId,null)),
+                new EventOutbox.OutboxRecord("recommendations-out-0",new MicroEvent(MicroEvent.Type.DELETE,productId,null)),
+                new EventOutbox.OutboxRecord("reviews-out-0",new MicroEvent(MicroEvent.Type.DELETE,productId,null))));
+    }
+    private Mono<Void> publishAll(List<EventOutbox.OutboxRecord> events){
+        // In outbox mode the events of an aggregate are appended as one record, a crash never leaves a part of it
+        if (outbox.isEnabled()){
+            return outbox.append(events);
+        }
+        return Mono.when(events.stream().map(event -> publish(event.bindingName(),event.event())).toList());
+    }
+    private Mono<Void> publish(String bindingName,MicroEvent event){
+        return eventCoalescer.submit(bindingName,event,this::dispatch);
+    }
+    private Mono<Void> dispatch(String bindingName,MicroEvent event){
+        // In outbox mode the event only has to reach the local log, the relay sends it to the binding later
+        return outbox.isEnabled() ? outbox.append(bindingName,event) : eventPublisher.publish(bindingName,event);
+    }
+    private String coalescingKey(HttpHeaders headers,Object... parameters){
+        StringBuilder key = new StringBuilder();
+        for (Object parameter : parameters){
+            key.append(parameter).append(':');
+        }
+        return key.append(headers.toSingleValueMap()).toString();
     }
     private Throwable handleException(Throwable ex){
         if (!(ex instanceof WebClientResponseException)){
@@ -10,6 +10,7 @@ import org.example.util.http.ServiceUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.core.context.ReactiveSecurityContextHolder;
 import org.springframework.security.core.context.SecurityContext;
@@ -17,12 +18,17 @@ import org.springframework.security.core.context.SecurityContextImpl;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
@@ -33,13 +39,19 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
     private final ServiceUtil serviceUtil;
     private final ObservationUtil observationUtil;
     private ProductCompositeIntegration integration;
+    private final ProductAggregateCache aggregateCache;
+    private final int firstPageSize;
     @Autowired
     public ProductCompositeServiceImpl(ServiceUtil serviceUtil,
                                        ObservationUtil observationUtil,
-                                       ProductCompositeIntegration integration){
+                                       ProductCompositeIntegration integration,
+                                       ProductAggregateCache aggregateCache,
+                                       @Value("${app.pagination.firstPageSize:100}") int firstPageSize){
         this.serviceUtil = serviceUtil;
         this.observationUtil = observationUtil;
         this.integration = integration;
+        this.aggregateCache = aggregateCache;
+        this.firstPageSize = firstPageSize;
     }
 
     @Override
@@ -56,14 +68,29 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
     public Mono<ProductAggregate> getProduct(HttpHeaders requestHeaders,int productId,int delay,int faultPercent) {
         return observationWithProductInfo(productId,() -> getProductInternal(requestHeaders,productId,delay,faultPercent));
     }
+
+    @Override
+    public Flux<ProductAggregate> getProducts(HttpHeaders requestHeaders,List<Integer> productIds) {
+        return observationUtil.observe(
+                "composite observation",
+                "product info",
+                "productIds",
+                String.valueOf(productIds),
+                () -> getProductsInternal(requestHeaders,productIds)
+        );
+    }
+
+    @Override
+    public Flux<ProductAggregateFragment> getProductStream(HttpHeaders requestHeaders,int productId) {
+        return observationWithProductInfo(productId,() -> getProductStreamInternal(requestHeaders,productId));
+    }
     private Mono<Void> deleteProductInternal(int productId){
         try{
             LOG.info("Will delete a product aggregate for product.id: {}",productId);
+            aggregateCache.invalidate(productId);
             return Mono.zip(r -> "",
                     getLogAuthorizationInfoMono(),
-                    integration.deleteProduct(productId),
-                    integration.deleteRecommendations(productId),
-                    integration.deleteReviews(productId))
+                    integration.deleteProductAggregate(productId).thenReturn(""))
                     .doOnError(ex -> LOG.warn("delete failed: {}",ex.toString()))
                     .log(LOG.getName(),Level.FINE).then();
         }catch (RuntimeException re){
@@ -74,16 +101,85 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
     private Mono<ProductAggregate> getProductInternal(HttpHeaders requestHeaders,int productId,int delay,int faultPercent){
         LOG.info("Will get composite product info for product.id={}",productId);
         HttpHeaders headers = getHeaders(requestHeaders,"X-group");
+        if (isCacheable(requestHeaders,delay,faultPercent)){
+            return aggregateCache.get(productId,() -> loadProductAggregate(headers,productId,delay,faultPercent));
+        }
+        return loadProductAggregate(headers,productId,delay,faultPercent);
+    }
+    private Mono<ProductAggregate> loadProductAggregate(HttpHeaders headers,int productId,int delay,int faultPercent){
         return Mono.zip(values -> createProductAggregate(
                 (SecurityContext) values[0],(Product) values[1],(List<Recommendation>) values[2],(List<Review>) values[3],serviceUtil.getServiceAddress()
         ),
                 getSecurityContextMono(),
                 integration.getProduct(headers,productId,delay,faultPercent),
-                integration.getRecommendations(headers,productId).collectList(),
-                integration.getReviews(headers,productId).collectList())
+                integration.getRecommendations(headers,productId,null,firstPageSize).collectList(),
+                integration.getReviews(headers,productId,null,firstPageSize).collectList())
                 .doOnError(ex -> LOG.warn("getCompositeProduct failed: {}",ex.toString()))
                 .log(LOG.getName(),Level.FINE);
     }
+    private Flux<ProductAggregateFragment> getProductStreamInternal(HttpHeaders requestHeaders,int productId){
+        LOG.info("Will stream composite product info for product.id={}",productId);
+        HttpHeaders headers = getHeaders(requestHeaders,"X-group");
+        // The product fragment goes out first, summaries follow in arrival order without being collected
+        Flux<ProductAggregateFragment> product = getLogAuthorizationInfoMono()
+                .then(integration.getProduct(headers,productId,0,0))
+                .map(p -> new ProductAggregateFragment(p.getProductId(),p.getName(),p.getWeight(),p.getServiceAddress()))
+                .flux();
+        Flux<ProductAggregateFragment> recommendations = allPages(
+                afterId -> integration.getRecommendations(headers,productId,afterId,firstPageSize),
+                Recommendation::getRecommendationId)
+                .map(r -> new ProductAggregateFragment(productId,
+                        new RecommendationSummary(r.getRecommendationId(),r.getAuthor(),r.getRate(),r.getContent()),
+                        r.getServiceAddress()));
+        Flux<ProductAggregateFragment> reviews = allPages(
+                afterId -> integration.getReviews(headers,productId,afterId,firstPageSize),
+                Review::getReviewId)
+                .map(r -> new ProductAggregateFragment(productId,
+                        new ReviewSummary(r.getReviewId(),r.getAuthor(),r.getSubject(),r.getContent()),
+                        r.getServiceAddress()));
+        return Flux.mergeSequential(product,Flux.merge(recommendations,reviews))
+                .doOnError(ex -> LOG.warn("getCompositeProductStream failed: {}",ex.toString()))
+                .log(LOG.getName(),Level.FINE);
+    }
+    /**
+     * Pages through a keyset paged read, the next page is requested after the id of the last element of a full page.
+     * Only one page is held at a time.
+     */
+    private <T> Flux<T> allPages(Function<Integer,Flux<T>> page,ToIntFunction<T> id){
+        return page.apply(null).collectList()
+                .expand(list -> list.size() < firstPageSize
+                        ? Mono.empty()
+                        : page.apply(id.applyAsInt(list.get(list.size() - 1))).collectList())
+                .flatMapIterable(list -> list);
+    }
+    private Flux<ProductAggregate> getProductsInternal(HttpHeaders requestHeaders,List<Integer> productIds){
+        List<Integer> ids = productIds.stream().distinct().toList();
+        serviceUtil.validateProductIds(ids);
+        if (ids.isEmpty()){
+            return Flux.empty();
+        }
+        LOG.info("Will get composite product info for {} products",ids.size());
+        HttpHeaders headers = getHeaders(requestHeaders,"X-group");
+        return Mono.zip(values -> createProductAggregates(
+                (SecurityContext) values[0],ids,(List<Product>) values[1],
+                (Map<Integer,Collection<Recommendation>>) values[2],
+                (Map<Integer,Collection<Review>>) values[3],serviceUtil.getServiceAddress()
+        ),
+                getSecurityContextMono(),
+                integration.getProducts(headers,ids).collectList(),
+                integration.getRecommendationsByProductIds(headers,ids).collectMultimap(Recommendation::getProductId),
+                integration.getReviewsByProductIds(headers,ids).collectMultimap(Review::getProductId))
+                .flatMapIterable(aggregates -> aggregates)
+                .doOnError(ex -> LOG.warn("getCompositeProducts failed: {}",ex.toString()))
+                .log(LOG.getName(),Level.FINE);
+    }
+    private boolean isCacheable(HttpHeaders requestHeaders,int delay,int faultPercent){
+        // Fault injection, routing to a specific group and explicit no-cache requests always go to the core services
+        String cacheControl = requestHeaders.getCacheControl();
+        return delay == 0 && faultPercent == 0
+                && !requestHeaders.containsKey("X-group")
+                && (cacheControl == null || !cacheControl.contains("no-cache"));
+    }
 
     private HttpHeaders getHeaders(HttpHeaders requestHeaders,String... headers){
         LOG.trace("Will look for {} headers: {}",headers.length,headers);
@@ -99,25 +195,23 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
     }
     private Mono<Void> createProductInterval(ProductAggregate body){
         try{
-            List<Mono> monoList = new ArrayList<>();
-            monoList.add(getLogAuthorizationInfoMono());
             LOG.info("Will create a new composite entity for product.id: {}",body.getProductId());
+            aggregateCache.invalidate(body.getProductId());
             Product product = new Product(body.getProductId(),body.getName(),body.getWeight(),null);
-            monoList.add(integration.createProduct(product));
+            List<Recommendation> recommendations = new ArrayList<>();
             if (body.getRecommendations() != null){
-                body.getRecommendations().forEach(r -> {
-                    Recommendation recommendation = new Recommendation(body.getProductId(),r.getRecommendationId(),r.getAuthor(),r.getRate(),r.getContent(),null);
-                    monoList.add(integration.createRecommendation(recommendation));
-                });
+                body.getRecommendations().forEach(r -> recommendations.add(new Recommendation(body.getProductId(),
+                        r.getRecommendationId(),r.getAuthor(),r.getRate(),r.getContent(),null)));
             }
+            List<Review> reviews = new ArrayList<>();
             if (body.getReviews() != null){
-                body.getReviews().forEach(r -> {
-                    Review review = new Review(body.getProductId(),r.getReviewId(),r.getAuthor(),r.getSubject(),r.getContent(),null);
-                    monoList.add(integration.createReview(review));
-                });
+                body.getReviews().forEach(r -> reviews.add(new Review(body.getProductId(),
+                        r.getReviewId(),r.getAuthor(),r.getSubject(),r.getContent(),null)));
             }
             LOG.debug("createCompositeProduct: composite entities created for productId: {}",body.getProductId());
-            return Mono.zip(r -> "",monoList.toArray(new Mono[0]))
+            return Mono.zip(r -> "",
+                    getLogAuthorizationInfoMono(),
+                    integration.createProductAggregate(product,recommendations,reviews).thenReturn(""))
                     .doOnError(ex -> LOG.warn("createCompositeProduct failed: {}",ex.toString()))
                     .then();
         }catch (RuntimeException re){
@@ -134,6 +228,31 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
                 supplier
         );
     }
+    private List<ProductAggregate> createProductAggregates(
+            SecurityContext sc,
+            List<Integer> productIds,
+            List<Product> products,
+            Map<Integer,Collection<Recommendation>> recommendations,
+            Map<Integer,Collection<Review>> reviews,
+            String serviceAddress
+    ){
+        logAuthorizationInfo(sc);
+        Map<Integer,Product> productsById = products.stream()
+                .collect(Collectors.toMap(Product::getProductId,p -> p,(p1,p2) -> p1));
+        List<ProductAggregate> aggregates = new ArrayList<>(productsById.size());
+        for (int productId : productIds){
+            Product product = productsById.get(productId);
+            if (product == null){
+                LOG.debug("No product found for productId: {}, leaves it out of the response",productId);
+                continue;
+            }
+            aggregates.add(toProductAggregate(product,
+                    new ArrayList<>(recommendations.getOrDefault(productId,List.of())),
+                    new ArrayList<>(reviews.getOrDefault(productId,List.of())),
+                    serviceAddress));
+        }
+        return aggregates;
+    }
     private ProductAggregate createProductAggregate(
             SecurityContext sc,
             Product product,
@@ -142,6 +261,14 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
             String serviceAddress
     ){
         logAuthorizationInfo(sc);
+        return toProductAggregate(product,recommendations,reviews,serviceAddress);
+    }
+    private ProductAggregate toProductAggregate(
+            Product product,
+            List<Recommendation> recommendations,
+            List<Review> reviews,
+            String serviceAddress
+    ){
         int productId = product.getProductId();
         String name = product.getName();
         int weight = product.getWeight();
@@ -160,7 +287,7 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
         String recommendationAddress = (recommendations != null &&
                 recommendations.size() > 0) ? recommendations.get(0).getServiceAddress() : "";
         ServiceAddress serviceAddresses = new ServiceAddress(serviceAddress,productAddress,reviewAddress,recommendationAddress);
-        return new ProductAggregate(productId,name,weight,recommendationSummaries,reviewSummaries,serviceAddresses);
+        return new ProductAggregate(productId,name,weight,recommendationSummaries,reviewSummaries,serviceAddresses,product.isStale());
     }
     private Mono<SecurityContext> getLogAuthorizationInfoMono(){
         return getSecurityContextMono().doOnNext(sc -> logAuthorizationInfo(sc));
@@ -0,0 +1,65 @@
+package com.example.microservices.composite.product.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+public class RequestCoalescer<K,V> {
+    private static final Logger LOG = LoggerFactory.getLogger(RequestCoalescer.class);
+    private final String endpoint;
+    private final boolean enabled;
+    private final ConcurrentMap<K,Flux<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalescedCounter;
+    public RequestCoalescer(String endpoint,boolean enabled,MeterRegistry meterRegistry){
+        this.endpoint = endpoint;
+        this.enabled = enabled;
+        this.coalescedCounter = Counter.builder("composite.requests.coalesced")
+                .description("Number of requests that joined an already in-flight downstream call")
+                .tag("endpoint",endpoint)
+                .register(meterRegistry);
+    }
+    public Mono<V> mono(K key,Supplier<Mono<V>> call){
+        return Mono.from(flux(key,() -> call.get().flux()));
+    }
+    public Flux<V> flux(K key,Supplier<Flux<V>> call){
+        if (!enabled){
+            return call.get();
+        }
+        // Deferred so that every (re)subscription, e.g. from @Retry, looks up the current in-flight call
+        return Flux.defer(() -> {
+            Flux<V> existing = inFlight.get(key);
+            if (existing != null){
+                coalescedCounter.increment();
+                LOG.debug("Joins in-flight {} call for key: {}",endpoint,key);
+                return existing;
+            }
+            Flux<V> created = share(key,call);
+            existing = inFlight.putIfAbsent(key,created);
+            if (existing != null){
+                coalescedCounter.increment();
+                return existing;
+            }
+            return created;
+        });
+    }
+    public int inFlightCount(){
+        return inFlight.size();
+    }
+    private Flux<V> share(K key,Supplier<Flux<V>> call){
+        Object[] self = new Object[1];
+        Flux<V> shared = Flux.defer(call)
+                .doOnTerminate(() -> inFlight.remove(key,self[0]))
+                .doOnCancel(() -> inFlight.remove(key,self[0]))
+                .replay()
+                .refCount();
+        self[0] = shared;
+        return shared;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.microservices.composite.product.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+@Component
+public class RequestHedger {
+    private static final Logger LOG = LoggerFactory.getLogger(RequestHedger.class);
+    private static final double HEDGE_PERCENTILE = 0.95;
+    private final boolean enabled;
+    private final Duration initialDelay;
+    private final Duration minDelay;
+    private final Duration maxDelay;
+    private final long minSamples;
+    private final double budgetRatio;
+    private final double maxBudget;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String,Endpoint> endpoints = new ConcurrentHashMap<>();
+    @Autowired
+    public RequestHedger(
+            @Value("${app.hedging.enabled:false}") boolean enabled,
+            @Value("${app.hedging.initialDelayMs:100}") long initialDelayMs,
+            @Value("${app.hedging.minDelayMs:20}") long minDelayMs,
+            @Value("${app.hedging.maxDelayMs:1000}") long maxDelayMs,
+            @Value("${app.hedging.minSamples:100}") long minSamples,
+            @Value("${app.hedging.budgetPercent:10}") int budgetPercent,
+            @Value("${app.hedging.maxBudget:10}") int maxBudget,
+            MeterRegistry meterRegistry
+    ){
+        this.enabled = enabled;
+        this.initialDelay = Duration.ofMillis(initialDelayMs);
+        this.minDelay = Duration.ofMillis(minDelayMs);
+        this.maxDelay = Duration.ofMillis(maxDelayMs);
+        this.minSamples = minSamples;
+        this.budgetRatio = budgetPercent / 100.0;
+        this.maxBudget = maxBudget;
+        this.meterRegistry = meterRegistry;
+        LOG.info("Creates a request hedger, enabled = {}, budget = {}%, delay = p95 within [{}, {}]",
+                enabled,budgetPercent,minDelay,maxDelay);
+    }
+    /**
+     * Subscribes to a second call if the first one has not answered within the observed p95 latency of the endpoint.
+     * The first call to emit wins and the other one is cancelled. Hedges are limited by a token bucket that is
+     * refilled by a fraction of a token per call, so hedging can not double the load during an incident.
+     */
+    public <V> Mono<V> hedge(String endpoint,Supplier<Mono<V>> call){
+        return hedge(endpoint,call,call);
+    }
+    /**
+     * Like {@link #hedge(String,Supplier)}, but the second call is made by hedgeCall, e.g. over another connection.
+     */
+    public <V> Mono<V> hedge(String endpoint,Supplier<Mono<V>> call,Supplier<Mono<V>> hedgeCall){
+        if (!enabled){
+            return call.get();
+        }
+        Endpoint e = endpoints.computeIfAbsent(endpoint,Endpoint::new);
+        return Mono.defer(() -> {
+            e.deposit();
+            Duration delay = e.hedgeDelay();
+            Mono<V> primary = e.timed(call.get());
+            Mono<V> hedge = Mono.delay(delay).then(Mono.defer(() -> {
+                if (!e.tryWithdraw()){
+                    e.skipped.increment();
+                    LOG.debug("Hedge budget for {} exhausted, waits for the first call",endpoint);
+                    return Mono.<V>never();
+                }
+                e.sent.increment();
+                LOG.debug("No response from {} within {}, sends a hedged call",endpoint,delay);
+                // Errors from the hedge are left to the first call to report
+                return e.timed(hedgeCall.get())
+                        .doOnNext(v -> e.won.increment())
+                        .onErrorResume(ex -> Mono.never());
+            }));
+            return Mono.firstWithSignal(primary,hedge);
+        });
+    }
+    private class Endpoint {
+        private final Timer latency;
+        private final Counter sent;
+        private final Counter won;
+        private final Counter skipped;
+        private double budget = maxBudget;
+        Endpoint(String endpoint){
+            this.latency = Timer.builder("composite.requests.hedging.latency")
+                    .description("Latency of successful calls, the hedge delay is its p95")
+                    .tag("endpoint",endpoint)
+                    .publishPercentiles(HEDGE_PERCENTILE)
+                    .register(meterRegistry);
+            this.sent = hedgeCounter(endpoint,"sent");
+            this.won = hedgeCounter(endpoint,"won");
+            this.skipped = hedgeCounter(endpoint,"budget_exhausted");
+        }
+        private Counter hedgeCounter(String endpoint,String outcome){
+            return Counter.builder("composite.requests.hedged")
+                    .description("Number of hedged calls")
+                    .tag("endpoint",endpoint)
+                    .tag("outcome",outcome)
+                    .register(meterRegistry);
+        }
+        <V> Mono<V> timed(Mono<V> call){
+            return Mono.defer(() -> {
+                long start = System.nanoTime();
+                return call.doOnNext(v -> latency.record(System.nanoTime() - start,TimeUnit.NANOSECONDS));
+            });
+        }
+        Duration hedgeDelay(){
+            if (latency.count() < minSamples){
+                return initialDelay;
+            }
+            for (ValueAtPercentile percentile : latency.takeSnapshot().percentileValues()){
+                if (percentile.percentile() == HEDGE_PERCENTILE){
+                    Duration p95 = Duration.ofNanos((long) percentile.value(TimeUnit.NANOSECONDS));
+                    return p95.compareTo(minDelay) < 0 ? minDelay : p95.compareTo(maxDelay) > 0 ? maxDelay : p95;
+                }
+            }
+            return initialDelay;
+        }
+        synchronized void deposit(){
+            budget = Math.min(maxBudget,budget + budgetRatio);
+        }
+        synchronized boolean tryWithdraw(){
+            if (budget < 1){
+                return false;
+            }
+            budget -= 1;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.microservices.composite.product;
+
+import com.example.microservices.composite.product.services.AdaptiveConcurrencyLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.api.exceptions.ServiceUnavailableException;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveConcurrencyLimiterTests {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    @Test
+    void rejectsCallsPastTheLimit(){
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(true,2,1,10,0.2,1.5,10,registry);
+        Sinks.One<Integer> pending = Sinks.one();
+        limiter.mono("test",pending::asMono).subscribe();
+        limiter.mono("test",pending::asMono).subscribe();
+        assertThrows(ServiceUnavailableException.class,() -> limiter.mono("test",() -> Mono.just(1)).block());
+        assertEquals(1.0,registry.get("composite.concurrency.rejected").counter().count());
+
+        pending.tryEmitValue(1);
+        assertEquals(0.0,registry.get("composite.concurrency.inflight").gauge().value());
+        assertEquals(1,limiter.mono("test",() -> Mono.just(1)).block());
+    }
+    @Test
+    void failuresShrinkTheLimit(){
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(true,10,1,10,0.2,1.5,10,registry);
+        for (int i = 0; i < 5; i++){
+            Mono<Integer> failing = limiter.mono("test",() -> Mono.error(new IllegalStateException("failure")));
+            assertThrows(IllegalStateException.class,failing::block);
+        }
+        assertTrue(registry.get("composite.concurrency.limit").gauge().value() < 10);
+    }
+    @Test
+    void timeoutsShrinkTheLimit(){
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(true,10,1,10,0.2,1.5,10,registry);
+        for (int i = 0; i < 5; i++){
+            assertEquals(1,limiter.mono("test",() -> Mono.just(1)).block());
+        }
+        double limit = registry.get("composite.concurrency.limit").gauge().value();
+        // Like the time limiter, the timeout cancels the call in flight
+        Mono<Integer> timingOut = limiter.mono("test",Mono::<Integer>never).timeout(Duration.ofMillis(50));
+        assertThrows(RuntimeException.class,timingOut::block);
+        assertTrue(registry.get("composite.concurrency.limit").gauge().value() < limit);
+        assertEquals(0.0,registry.get("composite.concurrency.inflight").gauge().value());
+    }
+    @Test
+    void disabledLimiterPassesCallsThrough(){
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(false,1,1,1,0.2,1.5,10,registry);
+        Sinks.One<Integer> pending = Sinks.one();
+        limiter.mono("test",pending::asMono).subscribe();
+        assertEquals(1,limiter.mono("test",() -> Mono.just(1)).block());
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.microservices.composite.product;
+
+import com.example.microservices.composite.product.services.EventCoalescer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.api.core.product.Product;
+import org.example.api.event.MicroEvent;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.example.api.event.MicroEvent.Type.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class EventCoalescerTests {
+    private final List<MicroEvent> published = new CopyOnWriteArrayList<>();
+    @Test
+    void replacesDeleteFollowedByCreate(){
+        EventCoalescer coalescer = new EventCoalescer(true,50,new SimpleMeterRegistry());
+        Mono<Void> delete = coalescer.submit("products-out-0",new MicroEvent(DELETE,1,null),this::publish);
+        Mono<Void> create = coalescer.submit("products-out-0",new MicroEvent(CREATE,1,product(1)),this::publish);
+        Mono.when(delete,create).block(Duration.ofSeconds(5));
+
+        assertEquals(1,published.size());
+        assertEquals(REPLACE,published.get(0).getEventType());
+        assertEquals(1,((Product) published.get(0).getData()).getProductId());
+    }
+    @Test
+    void deleteSupersedesEarlierEvents(){
+        EventCoalescer coalescer = new EventCoalescer(true,50,new SimpleMeterRegistry());
+        Mono.when(
+                coalescer.submit("reviews-out-0",new MicroEvent(CREATE,1,product(1)),this::publish),
+                coalescer.submit("reviews-out-0",new MicroEvent(CREATE,1,product(1)),this::publish),
+                coalescer.submit("reviews-out-0",new MicroEvent(DELETE,1,null),this::publish),
+                coalescer.submit("reviews-out-0",new MicroEvent(CREATE,2,product(2)),this::publish)
+        ).block(Duration.ofSeconds(5));
+
+        assertEquals(2,published.size());
+        assertEquals(List.of(CREATE,DELETE),published.stream().map(MicroEvent::getEventType).sorted().toList());
+    }
+    @Test
+    void keepsTheOrderOfOtherEvents(){
+        EventCoalescer coalescer = new EventCoalescer(true,50,new SimpleMeterRegistry());
+        Mono.when(
+                coalescer.submit("reviews-out-0",new MicroEvent(DELETE,1,null),this::publish),
+                coalescer.submit("reviews-out-0",new MicroEvent(CREATE,1,product(1)),this::publish),
+                coalescer.submit("reviews-out-0",new MicroEvent(CREATE,1,product(2)),this::publish)
+        ).block(Duration.ofSeconds(5));
+
+        assertEquals(List.of(REPLACE,CREATE),published.stream().map(MicroEvent::getEventType).toList());
+    }
+    @Test
+    void passesEventsThroughWhenDisabled(){
+        EventCoalescer coalescer = new EventCoalescer(false,50,new SimpleMeterRegistry());
+        coalescer.submit("products-out-0",new MicroEvent(DELETE,1,null),this::publish).block();
+        coalescer.submit("products-out-0",new MicroEvent(CREATE,1,product(1)),this::publish).block();
+        assertEquals(List.of(DELETE,CREATE),published.stream().map(MicroEvent::getEventType).toList());
+    }
+    private Mono<Void> publish(String bindingName,MicroEvent event){
+        return Mono.fromRunnable(() -> published.add(event));
+    }
+    private static Product product(int productId){
+        return new Product(productId,"name",1,null);
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.microservices.composite.product;
+
+import com.example.microservices.composite.product.services.EventOutbox;
+import com.example.microservices.composite.product.services.EventPublisher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.api.core.product.Product;
+import org.example.api.core.review.Review;
+import org.example.api.event.MicroEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class EventOutboxTests {
+    @TempDir
+    Path tempDir;
+    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+    @Test
+    void relaysAppendedEvents() throws IOException {
+        EventPublisher publisher = mock(EventPublisher.class);
+        when(publisher.publish(any(),any())).thenReturn(Mono.empty());
+        EventOutbox outbox = outbox(publisher,1024);
+        for (int i = 1; i <= 3; i++){
+            outbox.append("products-out-0",new MicroEvent(MicroEvent.Type.CREATE,i,new Product(i,"name " + i,i,null))).block();
+        }
+        verify(publisher,timeout(2000).times(3)).publish(eq("products-out-0"),
+                argThat(event -> event.getData() instanceof Product product && product.getName().equals("name " + event.getKey())));
+        outbox.close();
+
+        EventPublisher restartedPublisher = mock(EventPublisher.class);
+        EventOutbox restarted = outbox(restartedPublisher,1024);
+        verify(restartedPublisher,after(300).never()).publish(any(),any());
+        restarted.close();
+    }
+    @Test
+    void replaysUnsentEventsAfterRestart() throws IOException {
+        EventPublisher failingPublisher = mock(EventPublisher.class);
+        when(failingPublisher.publish(any(),any())).thenReturn(Mono.error(new IllegalStateException("broker down")));
+        // Small segments so that the events span several of them
+        EventOutbox outbox = outbox(failingPublisher,100);
+        for (int i = 1; i <= 5; i++){
+            outbox.append("reviews-out-0",new MicroEvent(MicroEvent.Type.CREATE,i,new Review(i,1,"a","s","c",null))).block();
+        }
+        verify(failingPublisher,timeout(2000).atLeastOnce()).publish(any(),any());
+        outbox.close();
+
+        EventPublisher publisher = mock(EventPublisher.class);
+        when(publisher.publish(any(),any())).thenReturn(Mono.empty());
+        EventOutbox restarted = outbox(publisher,100);
+        verify(publisher,timeout(2000).times(5)).publish(eq("reviews-out-0"),
+                argThat(event -> event.getData() instanceof Review review && review.getProductId() == (Integer) event.getKey()));
+        restarted.close();
+    }
+    @Test
+    void parksARecordThatKeepsFailing() throws IOException {
+        EventPublisher publisher = mock(EventPublisher.class);
+        when(publisher.publish(any(),any())).thenReturn(Mono.empty());
+        when(publisher.publish(any(),argThat(event -> event != null && event.getKey().equals(1))))
+                .thenReturn(Mono.error(new IllegalStateException("rejected")));
+        EventOutbox outbox = new EventOutbox(true,tempDir.toString(),1024 * 1024,500,20,3,100,false,mapper,publisher,
+                Schedulers.boundedElastic());
+        for (int i = 1; i <= 3; i++){
+            outbox.append("products-out-0",new MicroEvent(MicroEvent.Type.CREATE,i,new Product(i,"name " + i,i,null))).block();
+        }
+        verify(publisher,timeout(2000).times(3)).publish(any(),argThat(event -> event != null && event.getKey().equals(1)));
+        // Later events are sent along with every attempt of the failing record
+        verify(publisher,timeout(2000).atLeastOnce()).publish(any(),argThat(event -> event != null && event.getKey().equals(2)));
+        verify(publisher,timeout(2000).atLeastOnce()).publish(any(),argThat(event -> event != null && event.getKey().equals(3)));
+        outbox.close();
+        assertTrue(Files.size(tempDir.resolve("parked.log")) > 0);
+
+        // The checkpoint is past the parked record
+        EventPublisher restartedPublisher = mock(EventPublisher.class);
+        EventOutbox restarted = outbox(restartedPublisher,1024 * 1024);
+        verify(restartedPublisher,after(300).never()).publish(any(),any());
+        restarted.close();
+    }
+    @Test
+    void dropsATornAggregate() throws IOException {
+        EventPublisher failingPublisher = mock(EventPublisher.class);
+        when(failingPublisher.publish(any(),any())).thenReturn(Mono.error(new IllegalStateException("broker down")));
+        EventOutbox outbox = outbox(failingPublisher,1024 * 1024);
+        outbox.append(aggregate(1)).block();
+        outbox.append(aggregate(2)).block();
+        outbox.close();
+        // Simulates a crash in the middle of the append of the second aggregate
+        Path segment;
+        try (Stream<Path> files = Files.list(tempDir)){
+            segment = files.filter(file -> file.toString().endsWith(".log")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment,StandardOpenOption.WRITE)){
+            channel.truncate(channel.size() - 10);
+        }
+
+        EventPublisher publisher = mock(EventPublisher.class);
+        when(publisher.publish(any(),any())).thenReturn(Mono.empty());
+        EventOutbox restarted = outbox(publisher,1024 * 1024);
+        InOrder inOrder = inOrder(publisher);
+        inOrder.verify(publisher,timeout(2000)).publish(eq("products-out-0"),argThat(event -> event.getKey().equals(1)));
+        inOrder.verify(publisher,timeout(2000)).publish(eq("recommendations-out-0"),argThat(event -> event.getKey().equals(1)));
+        inOrder.verify(publisher,timeout(2000)).publish(eq("reviews-out-0"),argThat(event -> event.getKey().equals(1)));
+        verify(publisher,after(300).never()).publish(any(),argThat(event -> event.getKey().equals(2)));
+        restarted.close();
+    }
+    private List<EventOutbox.OutboxRecord> aggregate(int productId){
+        return List.of(
+                new EventOutbox.OutboxRecord("products-out-0",new MicroEvent(MicroEvent.Type.DELETE,productId,null)),
+                new EventOutbox.OutboxRecord("recommendations-out-0",new MicroEvent(MicroEvent.Type.DELETE,productId,null)),
+                new EventOutbox.OutboxRecord("reviews-out-0",new MicroEvent(MicroEvent.Type.DELETE,productId,null)));
+    }
+    private EventOutbox outbox(EventPublisher publisher,long segmentBytes){
+        return new EventOutbox(true,tempDir.toString(),segmentBytes,500,20,Integer.MAX_VALUE,100,false,mapper,publisher,
+                Schedulers.boundedElastic());
+    }
+}
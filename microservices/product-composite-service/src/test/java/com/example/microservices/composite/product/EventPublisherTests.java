@@ -0,0 +1,74 @@
+package com.example.microservices.composite.product;
+
+import com.example.microservices.composite.product.services.EventPublisher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.api.event.MicroEvent;
+import org.example.api.exceptions.ServiceUnavailableException;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.stream.function.StreamBridge;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class EventPublisherTests {
+    private final StreamBridge streamBridge = mock(StreamBridge.class);
+    @Test
+    void publishesAllEvents(){
+        when(streamBridge.send(eq("products-out-0"),any())).thenReturn(true);
+        EventPublisher publisher = publisher(100,10,5);
+        Flux.range(1,25)
+                .concatMap(i -> publisher.publish("products-out-0",new MicroEvent(MicroEvent.Type.DELETE,i,null)))
+                .blockLast(Duration.ofSeconds(5));
+        verify(streamBridge,times(25)).send(eq("products-out-0"),any());
+    }
+    @Test
+    void rejectsEventsWhenBufferIsFull(){
+        when(streamBridge.send(eq("products-out-0"),any())).thenReturn(true);
+        EventPublisher publisher = publisher(1,10,500);
+        publisher.publish("products-out-0",new MicroEvent(MicroEvent.Type.DELETE,1,null)).subscribe();
+        assertThrows(ServiceUnavailableException.class,
+                () -> publisher.publish("products-out-0",new MicroEvent(MicroEvent.Type.DELETE,2,null)).block());
+    }
+    @Test
+    void reportsFailedSends(){
+        when(streamBridge.send(eq("products-out-0"),any())).thenReturn(false);
+        EventPublisher publisher = publisher(100,10,5);
+        assertThrows(IllegalStateException.class,
+                () -> publisher.publish("products-out-0",new MicroEvent(MicroEvent.Type.DELETE,1,null)).block(Duration.ofSeconds(5)));
+    }
+    @Test
+    void laneSurvivesThrowingSend(){
+        when(streamBridge.send(eq("products-out-0"),any()))
+                .thenThrow(new IllegalStateException("broker down"))
+                .thenReturn(true);
+        EventPublisher publisher = publisher(100,10,5);
+        assertThrows(IllegalStateException.class,
+                () -> publisher.publish("products-out-0",new MicroEvent(MicroEvent.Type.DELETE,1,null)).block(Duration.ofSeconds(5)));
+        publisher.publish("products-out-0",new MicroEvent(MicroEvent.Type.DELETE,2,null)).block(Duration.ofSeconds(5));
+        verify(streamBridge,times(2)).send(eq("products-out-0"),any());
+    }
+    @Test
+    void laneSurvivesSlowSend(){
+        // A slow broker lets batches pile up behind the one being sent while the linger timer keeps firing
+        when(streamBridge.send(eq("products-out-0"),any())).thenAnswer(invocation -> {
+            Thread.sleep(2);
+            return true;
+        });
+        EventPublisher publisher = publisher(1000,5,1);
+        Flux.range(1,300)
+                .flatMap(i -> publisher.publish("products-out-0",new MicroEvent(MicroEvent.Type.DELETE,i,null)),300)
+                .blockLast(Duration.ofSeconds(30));
+        publisher.publish("products-out-0",new MicroEvent(MicroEvent.Type.DELETE,301,null)).block(Duration.ofSeconds(5));
+        verify(streamBridge,times(301)).send(eq("products-out-0"),any());
+    }
+    private EventPublisher publisher(int bufferSize,int batchSize,long lingerMs){
+        return new EventPublisher(streamBridge,Schedulers.boundedElastic(),new SimpleMeterRegistry(),
+                bufferSize,batchSize,lingerMs,false,1000);
+    }
+}
@@ -29,6 +29,7 @@ public class IsSameEvent extends TypeSafeMatcher<String> {
         LOG.trace("Convert the following json string to a map: {}",item);
         Map mapEvent = convertJsonStringToMap(item);
         mapEvent.remove("eventCreatedAt");
+        mapEvent.remove("eventId");
         Map mapExpectedEvent = getMapWithoutCreatedAt(expectedEvent);
         LOG.trace("Got the map: {}",mapEvent);
         LOG.trace("compare to the expected map: {}",mapExpectedEvent);
@@ -46,6 +47,8 @@ public class IsSameEvent extends TypeSafeMatcher<String> {
     private Map getMapWithoutCreatedAt(MicroEvent event){
         Map mapEvent = convertObjectToMap(event);
         mapEvent.remove("eventCreatedAt");
+        // Every event gets a new id, it is not part of the comparison
+        mapEvent.remove("eventId");
         return mapEvent;
     }
     private Map convertObjectToMap(Object object){
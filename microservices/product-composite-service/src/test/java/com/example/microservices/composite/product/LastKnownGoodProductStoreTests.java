@@ -0,0 +1,120 @@
+package com.example.microservices.composite.product;
+
+import com.example.microservices.composite.product.services.CacheInvalidationConfig;
+import com.example.microservices.composite.product.services.LastKnownGoodProductStore;
+import com.example.microservices.composite.product.services.ProductAggregateCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.api.core.product.Product;
+import org.example.api.event.MicroEvent;
+import org.example.util.http.ServiceUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LastKnownGoodProductStoreTests {
+    @TempDir
+    Path tempDir;
+    @Test
+    void returnsStaleCopy(){
+        LastKnownGoodProductStore store = new LastKnownGoodProductStore(true,10,"",new SimpleMeterRegistry());
+        assertNull(store.get(1));
+        Product product = new Product(1,"name",1,"address");
+        store.put(product);
+        Product stale = store.get(1);
+        assertTrue(stale.isStale());
+        assertFalse(product.isStale());
+        assertEquals("name",stale.getName());
+        store.remove(1);
+        assertNull(store.get(1));
+    }
+    @Test
+    void survivesRestart(){
+        String file = tempDir.resolve("lkg.dat").toString();
+        LastKnownGoodProductStore store = new LastKnownGoodProductStore(true,10,file,new SimpleMeterRegistry());
+        store.put(new Product(1,"name 1",1,"address"));
+        store.put(new Product(2,null,2,"address"));
+        store.put(new Product(3,"name 3",3,"address"));
+        store.remove(3);
+
+        LastKnownGoodProductStore restarted = new LastKnownGoodProductStore(true,10,file,new SimpleMeterRegistry());
+        assertEquals("name 1",restarted.get(1).getName());
+        assertNull(restarted.get(2).getName());
+        assertEquals(2,restarted.get(2).getWeight());
+        assertNull(restarted.get(3));
+    }
+    @Test
+    void collidingProductsKeepTheirOwnData(){
+        String file = tempDir.resolve("lkg.dat").toString();
+        // 10 products in memory, 20 slots in the file: 1, 21 and 41 share their home slot
+        LastKnownGoodProductStore store = new LastKnownGoodProductStore(true,10,file,new SimpleMeterRegistry());
+        store.put(new Product(1,"name 1",1,"address"));
+        store.put(new Product(21,"name 21",21,"address"));
+        store.put(new Product(41,"name 41",41,"address"));
+        // Removes a product in the middle of the probe chain, the ones behind it must still be found
+        store.remove(21);
+        store.put(new Product(41,"name 41b",41,"address"));
+
+        LastKnownGoodProductStore restarted = new LastKnownGoodProductStore(true,10,file,new SimpleMeterRegistry());
+        assertEquals("name 1",restarted.get(1).getName());
+        assertNull(restarted.get(21));
+        assertEquals("name 41b",restarted.get(41).getName());
+    }
+    @Test
+    void rebuildsFileWhenMaxSizeChanges(){
+        String file = tempDir.resolve("lkg.dat").toString();
+        LastKnownGoodProductStore store = new LastKnownGoodProductStore(true,10,file,new SimpleMeterRegistry());
+        store.put(new Product(3,"name 3",3,"address"));
+        store.put(new Product(15,"name 15",15,"address"));
+
+        LastKnownGoodProductStore resized = new LastKnownGoodProductStore(true,4,file,new SimpleMeterRegistry());
+        assertEquals("name 3",resized.get(3).getName());
+        assertEquals("name 15",resized.get(15).getName());
+        resized.remove(3);
+
+        LastKnownGoodProductStore restarted = new LastKnownGoodProductStore(true,10,file,new SimpleMeterRegistry());
+        assertNull(restarted.get(3));
+        assertEquals("name 15",restarted.get(15).getName());
+    }
+    @Test
+    void ignoresFileOfAnInterruptedRebuild() throws IOException{
+        Path file = tempDir.resolve("lkg.dat");
+        LastKnownGoodProductStore store = new LastKnownGoodProductStore(true,10,file.toString(),new SimpleMeterRegistry());
+        store.put(new Product(1,"name 1",1,"address"));
+        // Left behind by a restart that crashed while it rebuilt the file
+        Path tmp = tempDir.resolve("lkg.dat.tmp");
+        Files.write(tmp,new byte[100]);
+
+        LastKnownGoodProductStore restarted = new LastKnownGoodProductStore(true,10,file.toString(),new SimpleMeterRegistry());
+        assertEquals("name 1",restarted.get(1).getName());
+        assertFalse(Files.exists(tmp));
+    }
+    @Test
+    void deleteEventEvictsProduct(){
+        LastKnownGoodProductStore store = new LastKnownGoodProductStore(true,10,"",new SimpleMeterRegistry());
+        ProductAggregateCache aggregateCache = new ProductAggregateCache(false,10,60,0,new SimpleMeterRegistry(),
+                new ServiceUtil("7000"));
+        Consumer<MicroEvent<Integer,Object>> invalidator =
+                new CacheInvalidationConfig(aggregateCache,store).aggregateCacheInvalidator();
+        store.put(new Product(1,"name 1",1,"address"));
+        invalidator.accept(new MicroEvent<>(MicroEvent.Type.CREATE,1,null));
+        assertNotNull(store.get(1));
+        invalidator.accept(new MicroEvent<>(MicroEvent.Type.DELETE,1,null));
+        assertNull(store.get(1));
+    }
+    @Test
+    void discardsFileOfUnknownLayout() throws IOException{
+        Path file = tempDir.resolve("lkg.dat");
+        Files.write(file,new byte[4096]);
+        LastKnownGoodProductStore store = new LastKnownGoodProductStore(true,10,file.toString(),new SimpleMeterRegistry());
+        assertNull(store.get(1));
+        store.put(new Product(1,"name 1",1,"address"));
+        assertEquals("name 1",new LastKnownGoodProductStore(true,10,file.toString(),new SimpleMeterRegistry())
+                .get(1).getName());
+    }
+}
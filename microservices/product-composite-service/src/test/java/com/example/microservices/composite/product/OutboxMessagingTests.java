@@ -0,0 +1,95 @@
+package com.example.microservices.composite.product;
+
+import org.example.api.composite.product.ProductAggregate;
+import org.example.api.composite.product.RecommendationSummary;
+import org.example.api.composite.product.ReviewSummary;
+import org.example.api.core.product.Product;
+import org.example.api.core.recommendation.Recommendation;
+import org.example.api.core.review.Review;
+import org.example.api.event.MicroEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.stream.binder.test.OutputDestination;
+import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+
+import static com.example.microservices.composite.product.IsSameEvent.sameEventExceptCreatedAt;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.http.HttpStatus.ACCEPTED;
+
+/**
+ * Sends the events of an aggregate through the outbox and the binder, with the review events in the Avro format of
+ * the avro_events profile. The relay reads the events back from the outbox log, so their data has to keep its type.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        classes = {TestSecurityConfig.class},
+        properties = {
+                "spring.security.oauth2.resourceserver.jwt.issuer-uri=",
+                "spring.main.allow-bean-definition-overriding=true",
+                "spring.cloud.stream.defaultBinder=rabbit",
+                "spring.cloud.stream.bindings.reviews-out-0.content-type=application/vnd.microevent+avro",
+                "app.outbox.enabled=true",
+                "app.outbox.fsync=false",
+                "app.outbox.relayIntervalMs=20"
+        }
+)
+@Import({TestChannelBinderConfiguration.class})
+class OutboxMessagingTests {
+    @TempDir
+    static Path outboxDirectory;
+    @Autowired
+    private WebTestClient client;
+    @Autowired
+    private OutputDestination target;
+    @Autowired
+    @Qualifier("microEventAvroConverter")
+    private MessageConverter avroConverter;
+    @DynamicPropertySource
+    static void outboxProperties(DynamicPropertyRegistry registry){
+        registry.add("app.outbox.directory",() -> outboxDirectory.toString());
+    }
+    @Test
+    void relaysTypedEventsOfAnAggregate(){
+        ProductAggregate composite = new ProductAggregate(1,"name",1,
+                singletonList(new RecommendationSummary(1,"a",1,"c")),
+                singletonList(new ReviewSummary(1,"a","s","c")),null);
+        client.post()
+                .uri("/product-composite")
+                .body(Mono.just(composite),ProductAggregate.class)
+                .exchange()
+                .expectStatus().isEqualTo(ACCEPTED);
+
+        Message<byte[]> productMessage = target.receive(5000,"products");
+        assertNotNull(productMessage);
+        assertThat(new String(productMessage.getPayload()),is(sameEventExceptCreatedAt(
+                new MicroEvent<>(MicroEvent.Type.CREATE,1,new Product(1,"name",1,null)))));
+        Message<byte[]> recommendationMessage = target.receive(5000,"recommendations");
+        assertNotNull(recommendationMessage);
+        assertThat(new String(recommendationMessage.getPayload()),is(sameEventExceptCreatedAt(
+                new MicroEvent<>(MicroEvent.Type.CREATE,1,new Recommendation(1,1,"a",1,"c",null)))));
+
+        Message<byte[]> reviewMessage = target.receive(5000,"reviews");
+        assertNotNull(reviewMessage);
+        MicroEvent<?,?> reviewEvent = (MicroEvent<?,?>) avroConverter.fromMessage(reviewMessage,MicroEvent.class);
+        assertNotNull(reviewEvent);
+        assertEquals(MicroEvent.Type.CREATE,reviewEvent.getEventType());
+        Review review = assertInstanceOf(Review.class,reviewEvent.getData());
+        assertEquals(1,review.getReviewId());
+        assertEquals("s",review.getSubject());
+    }
+}
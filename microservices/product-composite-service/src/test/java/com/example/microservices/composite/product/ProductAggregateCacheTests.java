@@ -0,0 +1,82 @@
+package com.example.microservices.composite.product;
+
+import com.example.microservices.composite.product.services.ProductAggregateCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.api.composite.product.ProductAggregate;
+import org.example.api.composite.product.ServiceAddress;
+import org.example.util.http.ServiceUtil;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class ProductAggregateCacheTests {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ProductAggregateCache cache = new ProductAggregateCache(true,10,60,0,registry,new ServiceUtil("7000"));
+    private final AtomicInteger loads = new AtomicInteger();
+    @Test
+    void cachesLoadedAggregate(){
+        getProduct(1);
+        getProduct(1);
+        assertEquals(1,loads.get());
+        assertEquals(1.0,registry.get("cache.gets").tag("result","hit").functionCounter().count());
+    }
+    @Test
+    void cacheHitDoesNotReportTheAddressesOfTheFirstLoad(){
+        assertEquals("pro",getProduct(1).getServiceAddress().getPro());
+        ProductAggregate cached = getProduct(1);
+        assertEquals(1,loads.get());
+        assertEquals("",cached.getServiceAddress().getPro());
+        assertNotEquals("cmp",cached.getServiceAddress().getCmp());
+    }
+    @Test
+    void degradedAggregateIsNotCached(){
+        for (int i = 0; i < 2; i++){
+            cache.get(1,() -> Mono.fromCallable(() -> {
+                loads.incrementAndGet();
+                return aggregate(1,false);
+            }).flatMap(aggregate -> ProductAggregateCache.<ProductAggregate>emptyFallback().then(Mono.just(aggregate))))
+                    .block();
+        }
+        assertEquals(2,loads.get());
+    }
+    @Test
+    void staleAggregateIsNotCached(){
+        for (int i = 0; i < 2; i++){
+            cache.get(1,() -> Mono.fromCallable(() -> {
+                loads.incrementAndGet();
+                return aggregate(1,true);
+            })).block();
+        }
+        assertEquals(2,loads.get());
+    }
+    @Test
+    void invalidateForcesReload(){
+        getProduct(1);
+        cache.invalidate(1);
+        getProduct(1);
+        assertEquals(2,loads.get());
+    }
+    @Test
+    void invalidationDuringLoadIsNotOverwritten(){
+        cache.get(1,() -> {
+            loads.incrementAndGet();
+            cache.invalidate(1);
+            return Mono.just(aggregate(1,false));
+        }).block();
+        getProduct(1);
+        assertEquals(2,loads.get());
+    }
+    private ProductAggregate getProduct(int productId){
+        return cache.get(productId,() -> Mono.fromCallable(() -> {
+            loads.incrementAndGet();
+            return aggregate(productId,false);
+        })).block();
+    }
+    private static ProductAggregate aggregate(int productId,boolean stale){
+        return new ProductAggregate(productId,"name",1,null,null,new ServiceAddress("cmp","pro","rev","rec"),stale);
+    }
+}
@@ -2,6 +2,7 @@ package com.example.microservices.composite.product;
 
 import com.example.microservices.composite.product.services.ProductCompositeIntegration;
 import org.example.api.composite.product.ProductAggregate;
+import org.example.api.composite.product.ProductAggregateFragment;
 import org.example.api.composite.product.RecommendationSummary;
 import org.example.api.composite.product.ReviewSummary;
 import org.example.api.core.product.Product;
@@ -21,7 +22,9 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.Collections;
+import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.when;
 import static org.springframework.http.HttpStatus.*;
@@ -36,6 +39,7 @@ class ProductCompositeServiceApplicationTests {
 	private static final int PRODUCT_ID_OK = 1;
 	private static final int PRODUCT_ID_NOT_FOUND = 2;
 	private static final int PRODUCT_ID_INVALID = 3;
+	private static final int PRODUCT_ID_MANY_REVIEWS = 4;
 	@Autowired
 	private WebTestClient client;
 	@MockBean
@@ -44,10 +48,16 @@ class ProductCompositeServiceApplicationTests {
 	void setUp(){
 		when(compositeIntegration.getProduct(any(),eq(PRODUCT_ID_OK),anyInt(),anyInt()))
 				.thenReturn(Mono.just(new Product(PRODUCT_ID_OK,"name",1, "mock-address")));
-		when(compositeIntegration.getRecommendations(any(),eq(PRODUCT_ID_OK)))
+		when(compositeIntegration.getRecommendations(any(),eq(PRODUCT_ID_OK),any(),anyInt()))
 				.thenReturn(Flux.fromIterable(Collections.singletonList(new Recommendation(PRODUCT_ID_OK,1,"author",1,"content","mock address"))));
-		when(compositeIntegration.getReviews(any(),eq(PRODUCT_ID_OK)))
+		when(compositeIntegration.getReviews(any(),eq(PRODUCT_ID_OK),any(),anyInt()))
 				.thenReturn(Flux.fromIterable(Collections.singletonList(new Review(PRODUCT_ID_OK,1,"author","subject","content","mock address"))));
+		when(compositeIntegration.getProducts(any(),any()))
+				.thenReturn(Flux.just(new Product(PRODUCT_ID_OK,"name",1,"mock-address")));
+		when(compositeIntegration.getRecommendationsByProductIds(any(),any()))
+				.thenReturn(Flux.just(new Recommendation(PRODUCT_ID_OK,1,"author",1,"content","mock address")));
+		when(compositeIntegration.getReviewsByProductIds(any(),any()))
+				.thenReturn(Flux.just(new Review(PRODUCT_ID_OK,1,"author","subject","content","mock address")));
 		when(compositeIntegration.getProduct(any(),eq(PRODUCT_ID_NOT_FOUND),anyInt(),anyInt()))
 				.thenThrow(new NotFoundException("NOT FOUND: " + PRODUCT_ID_NOT_FOUND));
 		when(compositeIntegration.getProduct(any(),eq(PRODUCT_ID_INVALID),anyInt(),anyInt()))
@@ -65,6 +75,60 @@ class ProductCompositeServiceApplicationTests {
 				.jsonPath("$.reviews.length()").isEqualTo(1);
 	}
 	@Test
+	void getProductsByIds(){
+		client.get()
+				.uri("/product-composite?productIds=" + PRODUCT_ID_OK + "," + PRODUCT_ID_NOT_FOUND)
+				.accept(MediaType.APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectHeader().contentType(MediaType.APPLICATION_JSON)
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(1)
+				.jsonPath("$[0].productId").isEqualTo(PRODUCT_ID_OK)
+				.jsonPath("$[0].recommendations.length()").isEqualTo(1)
+				.jsonPath("$[0].reviews.length()").isEqualTo(1);
+	}
+	@Test
+	void getProductStream(){
+		List<ProductAggregateFragment> fragments = client.get()
+				.uri("/product-composite/" + PRODUCT_ID_OK + "/stream")
+				.accept(MediaType.APPLICATION_NDJSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+				.returnResult(ProductAggregateFragment.class)
+				.getResponseBody()
+				.collectList()
+				.block();
+		assertEquals(3,fragments.size());
+		assertEquals(ProductAggregateFragment.Type.PRODUCT,fragments.get(0).getType());
+		assertEquals("name",fragments.get(0).getName());
+		assertEquals(2,fragments.stream().filter(f -> f.getType() != ProductAggregateFragment.Type.PRODUCT).count());
+	}
+	@Test
+	void getProductStreamPagesThroughAllReviews(){
+		when(compositeIntegration.getProduct(any(),eq(PRODUCT_ID_MANY_REVIEWS),anyInt(),anyInt()))
+				.thenReturn(Mono.just(new Product(PRODUCT_ID_MANY_REVIEWS,"name",1,"mock-address")));
+		when(compositeIntegration.getRecommendations(any(),eq(PRODUCT_ID_MANY_REVIEWS),any(),anyInt()))
+				.thenReturn(Flux.empty());
+		// A full first page of 100 reviews, the second page starts after the last reviewId of the first one
+		when(compositeIntegration.getReviews(any(),eq(PRODUCT_ID_MANY_REVIEWS),isNull(),eq(100)))
+				.thenReturn(Flux.range(1,100).map(reviewId -> new Review(PRODUCT_ID_MANY_REVIEWS,reviewId,"a","s","c","mock address")));
+		when(compositeIntegration.getReviews(any(),eq(PRODUCT_ID_MANY_REVIEWS),eq(100),eq(100)))
+				.thenReturn(Flux.just(new Review(PRODUCT_ID_MANY_REVIEWS,101,"a","s","c","mock address")));
+		List<ProductAggregateFragment> fragments = client.get()
+				.uri("/product-composite/" + PRODUCT_ID_MANY_REVIEWS + "/stream")
+				.accept(MediaType.APPLICATION_NDJSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.returnResult(ProductAggregateFragment.class)
+				.getResponseBody()
+				.collectList()
+				.block();
+		assertEquals(102,fragments.size());
+		assertEquals(101,fragments.stream().filter(f -> f.getType() == ProductAggregateFragment.Type.REVIEW).count());
+	}
+	@Test
 	void getProductNotFound(){
 		getAndVerifyProduct(PRODUCT_ID_NOT_FOUND,NOT_FOUND)
 				.jsonPath("$.path").isEqualTo("/product-composite/" + PRODUCT_ID_NOT_FOUND)
@@ -0,0 +1,53 @@
+package com.example.microservices.composite.product;
+
+import com.example.microservices.composite.product.services.RequestCoalescer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RequestCoalescerTests {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RequestCoalescer<Integer,Integer> coalescer = new RequestCoalescer<>("test",true,registry);
+    private final AtomicInteger calls = new AtomicInteger();
+    @Test
+    void concurrentCallsShareOneDownstreamCall(){
+        List<List<Integer>> results = Flux.range(0,5)
+                .flatMap(i -> coalescer.flux(1,this::slowCall).collectList())
+                .collectList().block();
+        assertEquals(1,calls.get());
+        assertEquals(5,results.size());
+        results.forEach(r -> assertEquals(List.of(1,2,3),r));
+        assertEquals(4.0,registry.get("composite.requests.coalesced").tag("endpoint","test").counter().count());
+        assertEquals(0,coalescer.inFlightCount());
+    }
+    @Test
+    void completedCallIsNotReused(){
+        coalescer.flux(1,this::slowCall).blockLast();
+        coalescer.flux(1,this::slowCall).blockLast();
+        assertEquals(2,calls.get());
+    }
+    @Test
+    void failedCallIsRetriedWithNewDownstreamCall(){
+        Mono<Integer> failing = coalescer.mono(1,() -> Mono.fromCallable(() -> {
+            if (calls.incrementAndGet() < 2){
+                throw new IllegalStateException("first call fails");
+            }
+            return 42;
+        }));
+        assertEquals(42,failing.retry(1).block());
+        assertEquals(2,calls.get());
+    }
+    private Flux<Integer> slowCall(){
+        return Flux.defer(() -> {
+            calls.incrementAndGet();
+            return Flux.just(1,2,3).delaySubscription(Duration.ofMillis(100));
+        });
+    }
+}
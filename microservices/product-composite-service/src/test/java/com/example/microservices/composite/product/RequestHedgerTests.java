@@ -0,0 +1,65 @@
+package com.example.microservices.composite.product;
+
+import com.example.microservices.composite.product.services.RequestHedger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RequestHedgerTests {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger cancelled = new AtomicInteger();
+    @Test
+    void slowCallIsHedgedAndCancelled(){
+        RequestHedger hedger = new RequestHedger(true,50,10,1000,100,10,10,registry);
+        assertEquals(2,hedger.hedge("test",this::firstCallSlow).block(Duration.ofSeconds(1)));
+        assertEquals(2,calls.get());
+        assertEquals(1,cancelled.get());
+        assertEquals(1.0,hedgeCount("won"));
+    }
+    @Test
+    void hedgeUsesHedgeCall(){
+        RequestHedger hedger = new RequestHedger(true,50,10,1000,100,10,10,registry);
+        AtomicInteger hedgeCalls = new AtomicInteger();
+        assertEquals(-1,hedger.hedge("test",this::firstCallSlow,() -> Mono.fromCallable(() -> {
+            hedgeCalls.incrementAndGet();
+            return -1;
+        })).block(Duration.ofSeconds(1)));
+        assertEquals(1,calls.get());
+        assertEquals(1,hedgeCalls.get());
+    }
+    @Test
+    void fastCallIsNotHedged(){
+        RequestHedger hedger = new RequestHedger(true,200,10,1000,100,10,10,registry);
+        assertEquals(1,hedger.hedge("test",() -> Mono.fromCallable(calls::incrementAndGet)).block());
+        assertEquals(1,calls.get());
+        assertEquals(0.0,hedgeCount("sent"));
+    }
+    @Test
+    void exhaustedBudgetStopsHedging(){
+        RequestHedger hedger = new RequestHedger(true,10,10,1000,100,10,1,registry);
+        hedger.hedge("test",this::firstCallSlow).block(Duration.ofSeconds(1));
+        calls.set(0);
+        assertEquals(1,hedger.hedge("test",this::firstCallSlow).block(Duration.ofSeconds(2)));
+        assertEquals(1,calls.get());
+        assertEquals(1.0,hedgeCount("budget_exhausted"));
+    }
+    private Mono<Integer> firstCallSlow(){
+        return Mono.defer(() -> {
+            int call = calls.incrementAndGet();
+            if (call == 1){
+                return Mono.just(call).delayElement(Duration.ofMillis(500))
+                        .doOnCancel(cancelled::incrementAndGet);
+            }
+            return Mono.just(call);
+        });
+    }
+    private double hedgeCount(String outcome){
+        return registry.get("composite.requests.hedged").tag("outcome",outcome).counter().count();
+    }
+}
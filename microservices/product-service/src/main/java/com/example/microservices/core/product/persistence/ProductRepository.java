@@ -9,4 +9,5 @@ import java.util.Optional;
 
 public interface ProductRepository extends ReactiveCrudRepository<ProductEntity,String>{
     Mono<ProductEntity> findByProductId(int productId);
+    Mono<Long> deleteByProductId(int productId);
 }
@@ -0,0 +1,87 @@
+package com.example.microservices.core.product.services;
+
+import com.example.microservices.core.product.persistence.ProductEntity;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.result.DeleteResult;
+import org.bson.Document;
+import org.example.api.core.product.Product;
+import org.example.api.exceptions.EventProcessingException;
+import org.example.api.exceptions.InvalidInputException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Writes many products with one round trip to MongoDB, used by the batch consumer.
+ */
+@Component
+public class BulkProductWriter {
+    private static final Logger LOG = LoggerFactory.getLogger(BulkProductWriter.class);
+    private final ReactiveMongoTemplate template;
+    private final ProductMapper mapper;
+    @Autowired
+    public BulkProductWriter(ReactiveMongoTemplate template,ProductMapper mapper){
+        this.template = template;
+        this.mapper = mapper;
+    }
+    /**
+     * Inserts the products with a single unordered insertMany, so one failing product does not stop the others.
+     * Emits the failures by the index of the product in the list, empty if all products were inserted.
+     */
+    public Mono<Map<Integer,RuntimeException>> createProducts(List<Product> products){
+        if (products.isEmpty()){
+            return Mono.just(Map.of());
+        }
+        List<Document> documents = products.stream().map(this::toDocument).toList();
+        return template.getCollection(template.getCollectionName(ProductEntity.class))
+                .flatMap(collection -> Mono.from(collection.insertMany(documents,new InsertManyOptions().ordered(false))))
+                .doOnNext(result -> LOG.debug("Inserted {} products",result.getInsertedIds().size()))
+                .map(result -> Map.<Integer,RuntimeException>of())
+                .onErrorResume(MongoBulkWriteException.class,ex -> ex.getWriteConcernError() != null
+                        ? Mono.error(ex)
+                        : Mono.just(failures(products,ex.getWriteErrors())));
+    }
+    /**
+     * Deletes the products with a single deleteMany, products that do not exist are ignored.
+     */
+    public Mono<Long> deleteProducts(Collection<Integer> productIds){
+        if (productIds.isEmpty()){
+            return Mono.just(0L);
+        }
+        return template.remove(query(where("productId").in(productIds)),ProductEntity.class)
+                .map(DeleteResult::getDeletedCount)
+                .doOnNext(count -> LOG.debug("Deleted {} products",count));
+    }
+    private Document toDocument(Product product){
+        ProductEntity entity = mapper.apiToEntity(product);
+        // Same initial version as a save through the repository
+        entity.setVersion(0);
+        Document document = new Document();
+        template.getConverter().write(entity,document);
+        return document;
+    }
+    private static Map<Integer,RuntimeException> failures(List<Product> products,List<BulkWriteError> errors){
+        Map<Integer,RuntimeException> failures = new HashMap<>();
+        for (BulkWriteError error : errors){
+            int productId = products.get(error.getIndex()).getProductId();
+            failures.put(error.getIndex(),ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY
+                    ? new InvalidInputException("Duplicate key, Product Id: " + productId)
+                    : new EventProcessingException("Failed to insert product " + productId + ": " + error.getMessage()));
+        }
+        return failures;
+    }
+}
@@ -4,44 +4,163 @@ import org.example.api.core.product.Product;
 import org.example.api.core.product.ProductService;
 import org.example.api.event.MicroEvent;
 import org.example.api.exceptions.EventProcessingException;
+import org.example.api.exceptions.InvalidInputException;
+import org.example.util.messaging.EventDeduplicator;
+import org.example.util.messaging.EventMetrics;
+import org.example.util.messaging.MessageProcessors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.example.api.event.MicroEvent.Type.CREATE;
+import static org.example.api.event.MicroEvent.Type.DELETE;
+import static org.example.api.event.MicroEvent.Type.REPLACE;
 
 @Configuration
 public class MessageProcessorConfig {
     private static final Logger LOG = LoggerFactory.getLogger(MessageProcessorConfig.class);
+    private static final String DLQ_BINDING = "productsDlq-out-0";
     private final ProductService productService;
+    private final EventDeduplicator deduplicator;
+    private final EventMetrics eventMetrics;
+    private final BulkProductWriter bulkWriter;
+    private final MessageProcessors messageProcessors;
     @Autowired
-    public MessageProcessorConfig(ProductService productService){
+    public MessageProcessorConfig(ProductService productService,EventDeduplicator deduplicator,EventMetrics eventMetrics,
+                                  BulkProductWriter bulkWriter,MessageProcessors messageProcessors){
         this.productService = productService;
+        this.deduplicator = deduplicator;
+        this.eventMetrics = eventMetrics;
+        this.bulkWriter = bulkWriter;
+        this.messageProcessors = messageProcessors;
     }
+    /**
+     * Processes one event at a time, see {@link MessageProcessors#blocking}.
+     */
     @Bean
-    public Consumer<MicroEvent<Integer, Product>> messageProcessor(){
-        return event -> {
-            LOG.info("Process message created at {}...",event.getEventCreatedAt());
-            switch (event.getEventType()){
-                case CREATE -> {
-                    Product product = event.getData();
-                    LOG.info("Create product with ID: {}",product.getProductId());
-                    productService.createProduct(product).block();
-                }
-                case DELETE -> {
-                    int productId = event.getKey();
-                    LOG.info("Delete product with ProductID: {}",productId);
-                    productService.deleteProduct(productId).block();
-                }
-                default -> {
-                    String errorMessage = "Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event";
-                    LOG.warn(errorMessage);
-                    throw new EventProcessingException(errorMessage);
+    public Consumer<MicroEvent<Integer,Product>> messageProcessor(){
+        return messageProcessors.blocking(productService::createProduct,productService::deleteProduct);
+    }
+
+    /**
+     * Reactive mode of the messageProcessor, enabled by the reactive_consumer profile, see
+     * {@link MessageProcessors#reactive}.
+     */
+    @Bean
+    public Function<Flux<MicroEvent<Integer,Product>>,Mono<Void>> reactiveMessageProcessor(){
+        return messageProcessors.reactive(DLQ_BINDING,productService::createProduct,productService::deleteProduct);
+    }
+
+    /**
+     * Parallel mode of the messageProcessor, enabled by the parallel_consumer profile, see
+     * {@link MessageProcessors#parallel}.
+     */
+    @Bean
+    public Consumer<List<MicroEvent<Integer,Product>>> parallelMessageProcessor(){
+        return messageProcessors.parallel(DLQ_BINDING,productService::createProduct,productService::deleteProduct);
+    }
+
+    /**
+     * Batch mode of the messageProcessor, enabled by the batch_consumer profile. Consecutive events of the same type
+     * are written with one bulk operation, the order between creates and deletes is kept. Events that fail on their
+     * own are sent to the DLQ, the batch only fails if the DLQ can't be reached or the bulk operation fails as a whole.
+     */
+    @Bean
+    public Consumer<List<MicroEvent<Integer,Product>>> batchMessageProcessor(){
+        return batch -> {
+            List<MicroEvent<Integer,Product>> events = messageProcessors.withoutDuplicates(batch);
+            LOG.info("Process a batch of {} messages, skipped {} duplicates...",events.size(),batch.size() - events.size());
+            int failed = 0;
+            int start = 0;
+            while (start < events.size()){
+                MicroEvent.Type type = events.get(start).getEventType();
+                int end = start + 1;
+                while (end < events.size() && events.get(end).getEventType() == type){
+                    end++;
                 }
+                List<MicroEvent<Integer,Product>> run = events.subList(start,end);
+                failed += eventMetrics.record(type,() -> processRun(type,run));
+                start = end;
             }
-            LOG.info("Message processing done!");
+            LOG.info("Batch processing done, {} of {} messages failed",failed,events.size());
         };
     }
+    private int processRun(MicroEvent.Type type,List<MicroEvent<Integer,Product>> run){
+        if (type == CREATE){
+            return createProducts(run);
+        }else if (type == DELETE){
+            return deleteProducts(run);
+        }else if (type == REPLACE){
+            return replaceProducts(run);
+        }
+        run.forEach(event -> sendToDlq(event,new EventProcessingException(
+                "Incorrect event type: " + event.getEventType() + ", expected a CREATE, DELETE or REPLACE event")));
+        return run.size();
+    }
+    private int createProducts(List<MicroEvent<Integer,Product>> events){
+        List<MicroEvent<Integer,Product>> valid = new ArrayList<>();
+        Map<MicroEvent<Integer,Product>,RuntimeException> failures = new LinkedHashMap<>();
+        for (MicroEvent<Integer,Product> event : events){
+            Product product = event.getData();
+            if (product == null || product.getProductId() < 1){
+                failures.put(event,new InvalidInputException("Invalid productId: " + (product == null ? null : product.getProductId())));
+            }else{
+                valid.add(event);
+            }
+        }
+        LOG.debug("Create {} products",valid.size());
+        bulkWriter.createProducts(valid.stream().map(MicroEvent::getData).toList())
+                .block()
+                .forEach((index,ex) -> failures.put(valid.get(index),ex));
+        valid.stream()
+                .filter(event -> !failures.containsKey(event))
+                .forEach(event -> deduplicator.markProcessed(event.getEventId()));
+        failures.forEach(this::sendToDlq);
+        return failures.size();
+    }
+    private int deleteProducts(List<MicroEvent<Integer,Product>> events){
+        Set<Integer> productIds = new LinkedHashSet<>();
+        List<MicroEvent<Integer,Product>> valid = new ArrayList<>();
+        int failed = 0;
+        for (MicroEvent<Integer,Product> event : events){
+            if (event.getKey() == null || event.getKey() < 1){
+                sendToDlq(event,new InvalidInputException("Invalid productId: " + event.getKey()));
+                failed++;
+            }else{
+                productIds.add(event.getKey());
+                valid.add(event);
+            }
+        }
+        LOG.debug("Delete {} products",productIds.size());
+        bulkWriter.deleteProducts(productIds).block();
+        valid.forEach(event -> deduplicator.markProcessed(event.getEventId()));
+        return failed;
+    }
+    private int replaceProducts(List<MicroEvent<Integer,Product>> events){
+        // Invalid keys are reported by createProducts, deleting them is a no-op
+        List<Integer> productIds = events.stream()
+                .map(MicroEvent::getKey)
+                .filter(productId -> productId != null && productId > 0)
+                .toList();
+        LOG.debug("Replace {} products",productIds.size());
+        bulkWriter.deleteProducts(productIds).block();
+        return createProducts(events);
+    }
+    private void sendToDlq(MicroEvent<Integer,Product> event,RuntimeException ex){
+        // Fails the whole batch if the DLQ can't be reached, so that it is redelivered instead of losing the event
+        messageProcessors.sendToDlq(DLQ_BINDING,event,ex);
+    }
 }
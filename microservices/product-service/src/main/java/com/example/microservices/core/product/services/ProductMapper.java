@@ -9,7 +9,8 @@ import org.mapstruct.Mappings;
 @Mapper(componentModel = "spring")
 public interface ProductMapper {
     @Mappings({
-            @Mapping(target = "serviceAddress",ignore = true)
+            @Mapping(target = "serviceAddress",ignore = true),
+            @Mapping(target = "stale",ignore = true)
     })
     Product entityToApi(ProductEntity entity);
     @Mappings({
@@ -0,0 +1,108 @@
+package com.example.microservices.core.product.services;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+import org.example.api.core.product.Product;
+import org.example.util.http.ServiceUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * Read path of the products. Only the fields of the API are fetched, and they are decoded from BSON straight into
+ * Product objects, without a ProductEntity and the mapper in between.
+ */
+@Component
+public class ProductReader {
+    private static final String COLLECTION = "products";
+    private static final Bson PROJECTION = Projections.fields(
+            Projections.include("productId","name","weight"),
+            Projections.excludeId());
+    private final ReactiveMongoTemplate template;
+    // Shared by all requests, so that the driver keeps its codec lookups cached
+    private final CodecRegistry codecRegistry;
+    @Autowired
+    public ProductReader(ReactiveMongoTemplate template,ServiceUtil serviceUtil){
+        this.template = template;
+        this.codecRegistry = CodecRegistries.fromRegistries(
+                CodecRegistries.fromCodecs(new ProductCodec(serviceUtil::getServiceAddress)),
+                MongoClientSettings.getDefaultCodecRegistry());
+    }
+    public Mono<Product> findByProductId(int productId){
+        return find(Filters.eq("productId",productId)).next();
+    }
+    public Flux<Product> findByProductIdIn(Collection<Integer> productIds){
+        return find(Filters.in("productId",productIds));
+    }
+    private Flux<Product> find(Bson filter){
+        return template.getCollection(COLLECTION)
+                .flatMapMany(collection -> collection
+                        .withDocumentClass(Product.class)
+                        .withCodecRegistry(codecRegistry)
+                        .find(filter)
+                        .projection(PROJECTION));
+    }
+    /**
+     * Maps the fields of the API to and from the product documents. The service address is not stored, decoded
+     * products get the address of this instance.
+     */
+    private static class ProductCodec implements Codec<Product> {
+        private final Supplier<String> serviceAddress;
+        ProductCodec(Supplier<String> serviceAddress){
+            this.serviceAddress = serviceAddress;
+        }
+        @Override
+        public Product decode(BsonReader reader,DecoderContext decoderContext){
+            int productId = 0;
+            String name = null;
+            int weight = 0;
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT){
+                String field = reader.readName();
+                if (reader.getCurrentBsonType() == BsonType.NULL){
+                    reader.readNull();
+                    continue;
+                }
+                switch (field){
+                    case "productId" -> productId = reader.readInt32();
+                    case "name" -> name = reader.readString();
+                    case "weight" -> weight = reader.readInt32();
+                    default -> reader.skipValue();
+                }
+            }
+            reader.readEndDocument();
+            return new Product(productId,name,weight,serviceAddress.get());
+        }
+        @Override
+        public void encode(BsonWriter writer,Product value,EncoderContext encoderContext){
+            writer.writeStartDocument();
+            writer.writeInt32("productId",value.getProductId());
+            if (value.getName() == null){
+                writer.writeNull("name");
+            }else{
+                writer.writeString("name",value.getName());
+            }
+            writer.writeInt32("weight",value.getWeight());
+            writer.writeEndDocument();
+        }
+        @Override
+        public Class<Product> getEncoderClass(){
+            return Product.class;
+        }
+    }
+}
@@ -14,9 +14,12 @@ import org.springframework.boot.sql.init.dependency.AbstractBeansOfTypeDatabaseI
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
 import java.util.logging.Level;
 
@@ -25,13 +28,16 @@ public class ProductServiceImpl implements ProductService {
     private static final Logger LOG = LoggerFactory.getLogger(ProductServiceImpl.class);
     private final ServiceUtil serviceUtil;
     private final ProductRepository repository;
+    private final ProductReader reader;
     private final ProductMapper mapper;
     @Autowired
     public ProductServiceImpl(ServiceUtil serviceUtil,
                               ProductMapper mapper,
-                              ProductRepository repository){
+                              ProductRepository repository,
+                              ProductReader reader){
         this.serviceUtil = serviceUtil;
         this.repository = repository;
+        this.reader = reader;
         this.mapper = mapper;
     }
 
@@ -56,10 +62,10 @@ public class ProductServiceImpl implements ProductService {
         }
         LOG.debug("deleteProduct: tries to delete an entity with productId: {}",
                 productId);
-        return repository.findByProductId(productId)
+        return repository.deleteByProductId(productId)
+                .doOnNext(count -> LOG.debug("deleteProduct: deleted {} entities",count))
                 .log(LOG.getName(),Level.FINE)
-                .map(e -> repository.delete(e))
-                .flatMap(e -> e);
+                .then();
     }
 
     @Override
@@ -68,17 +74,23 @@ public class ProductServiceImpl implements ProductService {
             throw new InvalidInputException("Invalid productId: " + productId);
         }
         LOG.info("Will get product info for id={}", productId);
-        return repository.findByProductId(productId)
+        return reader.findByProductId(productId)
                 .map(e -> throwErrorIfBadLuck(e,faultPercent))
                 .delayElement(Duration.ofSeconds(delay))
                 .switchIfEmpty(Mono.error(new NotFoundException("No product found for productId: " + productId)))
-                .log(LOG.getName(), Level.FINE)
-                .map(e -> mapper.entityToApi(e))
-                .map(e -> setServiceAddress(e));
+                .log(LOG.getName(), Level.FINE);
     }
-    private ProductEntity throwErrorIfBadLuck(ProductEntity entity,int faultPercent){
+
+    @Override
+    public Flux<Product> getProducts(HttpHeaders headers,List<Integer> productIds) {
+        serviceUtil.validateProductIds(productIds);
+        LOG.info("Will get product info for {} ids",productIds.size());
+        return reader.findByProductIdIn(new HashSet<>(productIds))
+                .log(LOG.getName(),Level.FINE);
+    }
+    private Product throwErrorIfBadLuck(Product product,int faultPercent){
         if (faultPercent == 0){
-            return entity;
+            return product;
         }
         int randomThreshold = getRandomNumber(1,100);
 
@@ -88,7 +100,7 @@ public class ProductServiceImpl implements ProductService {
             LOG.info("Bad luck, an error occurred, {} >= {}",faultPercent,randomThreshold);
             throw new RuntimeException("Something went wrong...");
         }
-        return entity;
+        return product;
     }
     private final Random randomNumberGenerator = new Random();
     private int getRandomNumber(int min,int max){
@@ -97,8 +109,4 @@ public class ProductServiceImpl implements ProductService {
         }
         return randomNumberGenerator.nextInt((max - min) + 1) + min;
     }
-    private Product setServiceAddress(Product e){
-        e.setServiceAddress(serviceUtil.getServiceAddress());
-        return e;
-    }
 }
@@ -67,6 +67,13 @@ class PersistenceTests extends MongoDbTestBase{
                 .expectNext(false).verifyComplete();
     }
     @Test
+    void deleteByProductId(){
+        StepVerifier.create(repository.deleteByProductId(savedEntity.getProductId())).expectNext(1L).verifyComplete();
+        StepVerifier.create(repository.existsById(savedEntity.getId()))
+                .expectNext(false).verifyComplete();
+        StepVerifier.create(repository.deleteByProductId(savedEntity.getProductId())).expectNext(0L).verifyComplete();
+    }
+    @Test
     void getByProductId(){
         StepVerifier.create(repository.findByProductId(savedEntity.getProductId()))
                 .expectNextMatches(foundEntity -> areProductEqual(savedEntity,foundEntity))
@@ -9,16 +9,30 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.example.api.event.MicroEvent.Type.CREATE;
 import static org.example.api.event.MicroEvent.Type.DELETE;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
 properties = {})
@@ -28,6 +42,14 @@ class ProductServiceApplicationTests extends MongoDbTestBase {
 	@Autowired
 	@Qualifier("messageProcessor")
 	private Consumer<MicroEvent<Integer,Product>> messageProcessor;
+	@Autowired
+	@Qualifier("batchMessageProcessor")
+	private Consumer<List<MicroEvent<Integer,Product>>> batchMessageProcessor;
+	@Autowired
+	@Qualifier("reactiveMessageProcessor")
+	private Function<Flux<MicroEvent<Integer,Product>>,Mono<Void>> reactiveMessageProcessor;
+	@MockBean
+	private StreamBridge streamBridge;
 	@BeforeEach
 	void setupDb(){
 		repository.deleteAll().block();
@@ -58,6 +80,14 @@ class ProductServiceApplicationTests extends MongoDbTestBase {
 				thrown.getMessage());
 	}
 	@Test
+	void skipDuplicateEvents(){
+		MicroEvent<Integer,Product> event = createProductEvent(1);
+		messageProcessor.accept(event);
+		// A redelivery of the same event doesn't reach the database and doesn't fail on the duplicate key
+		messageProcessor.accept(event);
+		assertEquals(1,(long)repository.count().block());
+	}
+	@Test
 	void deleteProduct(){
 		int productId = 1;
 		sendCreateProductEvent(productId);
@@ -69,6 +99,64 @@ class ProductServiceApplicationTests extends MongoDbTestBase {
 		sendDeleteProductEvent(productId);
 	}
 	@Test
+	void processBatch(){
+		when(streamBridge.send(any(),any())).thenReturn(true);
+		sendCreateProductEvent(1);
+		batchMessageProcessor.accept(List.of(
+				createProductEvent(1),
+				createProductEvent(2),
+				createProductEvent(3),
+				new MicroEvent<>(DELETE,3,null),
+				createProductEvent(-1)));
+		assertNotNull(repository.findByProductId(1).block());
+		assertNotNull(repository.findByProductId(2).block());
+		assertNull(repository.findByProductId(3).block());
+		assertEquals(2,(long)repository.count().block());
+		// The duplicate and the invalid product
+		verify(streamBridge,times(2)).send(eq("productsDlq-out-0"),any());
+
+		batchMessageProcessor.accept(List.of(
+				new MicroEvent<>(DELETE,1,null),
+				new MicroEvent<>(DELETE,2,null),
+				new MicroEvent<>(DELETE,2,null)));
+		assertEquals(0,(long)repository.count().block());
+	}
+	@Test
+	void processEventsReactively(){
+		when(streamBridge.send(any(),any())).thenReturn(true);
+		// Creates and deletes of one product must stay in order, the invalid product ends up in the DLQ
+		Flux<MicroEvent<Integer,Product>> events = Flux.range(1,3)
+				.concatMap(productId -> Flux.just(
+						createProductEvent(productId),
+						new MicroEvent<>(DELETE,productId,null),
+						createProductEvent(productId)))
+				.concatWith(Flux.just(createProductEvent(-1)));
+		reactiveMessageProcessor.apply(events).block(Duration.ofSeconds(10));
+		assertEquals(3,(long)repository.count().block());
+		verify(streamBridge,times(1)).send(eq("productsDlq-out-0"),any());
+	}
+	@Test
+	void getProductsByIds(){
+		sendCreateProductEvent(1);
+		sendCreateProductEvent(2);
+		sendCreateProductEvent(3);
+		// Unknown productIds are left out
+		getAndVerifyProduct("?productIds=1,3,4",HttpStatus.OK)
+				.jsonPath("$.length()").isEqualTo(2)
+				.jsonPath("$[*].productId").value(containsInAnyOrder(1,3));
+	}
+	@Test
+	void getProductsTooManyIds(){
+		String productIds = IntStream.rangeClosed(1,101).mapToObj(String::valueOf).collect(Collectors.joining(","));
+		getAndVerifyProduct("?productIds=" + productIds,HttpStatus.UNPROCESSABLE_ENTITY)
+				.jsonPath("$.message").isEqualTo("Too many productIds: 101, max is 100");
+	}
+	@Test
+	void getProductsInvalidId(){
+		getAndVerifyProduct("?productIds=1,-1",HttpStatus.UNPROCESSABLE_ENTITY)
+				.jsonPath("$.message").isEqualTo("Invalid productId: -1");
+	}
+	@Test
 	void getProductInvalidParameterString(){
 		getAndVerifyProduct("/no-integer",HttpStatus.BAD_REQUEST)
 				.jsonPath("$.path").isEqualTo("/product/no-integer")
@@ -92,9 +180,11 @@ class ProductServiceApplicationTests extends MongoDbTestBase {
 				.isEqualTo("Invalid productId: " + productIdInvalid);
 	}
 	private void sendCreateProductEvent(int productId){
+		messageProcessor.accept(createProductEvent(productId));
+	}
+	private MicroEvent<Integer,Product> createProductEvent(int productId){
 		Product product = new Product(productId,"Name " + productId,productId,"SA");
-		MicroEvent<Integer,Product> event = new MicroEvent(CREATE,productId,product);
-		messageProcessor.accept(event);
+		return new MicroEvent(CREATE,productId,product);
 	}
 	private void sendDeleteProductEvent(int productId){
 		MicroEvent<Integer,Product> event = new MicroEvent<>(DELETE,productId,null);
@@ -3,9 +3,11 @@ package com.example.microservices.core.recommendation.persistence;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 
 public interface RecommendationRepository extends ReactiveCrudRepository<RecommendationEntity,String> {
     Flux<RecommendationEntity> findByProductId(int productId);
+    Mono<Long> deleteByProductId(int productId);
 }
@@ -3,45 +3,53 @@ package com.example.microservices.core.recommendation.services;
 import org.example.api.core.recommendation.Recommendation;
 import org.example.api.core.recommendation.RecommendationService;
 import org.example.api.event.MicroEvent;
-import org.example.api.exceptions.EventProcessingException;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.example.util.messaging.MessageProcessors;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Configuration
 public class MessageProcessorConfig {
-    private static final Logger LOG = LoggerFactory.getLogger(MessageProcessorConfig.class);
+    private static final String DLQ_BINDING = "recommendationsDlq-out-0";
     private final RecommendationService recommendationService;
+    private final MessageProcessors messageProcessors;
     @Autowired
-    public MessageProcessorConfig(RecommendationService recommendationService){
+    public MessageProcessorConfig(RecommendationService recommendationService,MessageProcessors messageProcessors){
         this.recommendationService = recommendationService;
+        this.messageProcessors = messageProcessors;
     }
+    /**
+     * Processes one event at a time, see {@link MessageProcessors#blocking}.
+     */
     @Bean
-    public Consumer<MicroEvent<Integer, Recommendation>> messageProcessor(){
-        return event -> {
-            LOG.info("Process message created at {}...",event.getEventCreatedAt());
-            switch (event.getEventType()){
-                case CREATE -> {
-                    Recommendation recommendation = event.getData();
-                    LOG.info("create recommendation with ID: {}/{}",recommendation.getProductId(),recommendation.getRecommendationId());
-                    recommendationService.createRecommendation(recommendation).block();
-                }
-                case DELETE -> {
-                    int productId = event.getKey();
-                    LOG.info("Delete recommendations with ProductID: {}",productId);
-                    recommendationService.deleteRecommendations(productId).block();
-                }
-                default -> {
-                    String errorMessage = "Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event";
-                    LOG.warn(errorMessage);
-                    throw new EventProcessingException(errorMessage);
-                }
-            }
-            LOG.info("Message processing done!");
-        };
+    public Consumer<MicroEvent<Integer,Recommendation>> messageProcessor(){
+        return messageProcessors.blocking(recommendationService::createRecommendation,
+                recommendationService::deleteRecommendations);
+    }
+
+    /**
+     * Reactive mode of the messageProcessor, enabled by the reactive_consumer profile, see
+     * {@link MessageProcessors#reactive}.
+     */
+    @Bean
+    public Function<Flux<MicroEvent<Integer,Recommendation>>,Mono<Void>> reactiveMessageProcessor(){
+        return messageProcessors.reactive(DLQ_BINDING,recommendationService::createRecommendation,
+                recommendationService::deleteRecommendations);
+    }
+
+    /**
+     * Parallel mode of the messageProcessor, enabled by the parallel_consumer profile, see
+     * {@link MessageProcessors#parallel}.
+     */
+    @Bean
+    public Consumer<List<MicroEvent<Integer,Recommendation>>> parallelMessageProcessor(){
+        return messageProcessors.parallel(DLQ_BINDING,recommendationService::createRecommendation,
+                recommendationService::deleteRecommendations);
     }
 }
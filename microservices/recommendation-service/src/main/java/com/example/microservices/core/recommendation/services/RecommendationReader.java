@@ -0,0 +1,129 @@
+package com.example.microservices.core.recommendation.services;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.reactivestreams.client.FindPublisher;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+import org.example.api.core.recommendation.Recommendation;
+import org.example.util.http.ServiceUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * Read path of the recommendations. Only the fields of the API are fetched, and they are decoded from BSON straight
+ * into Recommendation objects, without a RecommendationEntity and the mapper in between.
+ */
+@Component
+public class RecommendationReader {
+    private static final String COLLECTION = "recommendations";
+    private static final Bson PROJECTION = Projections.fields(
+            Projections.include("productId","recommendationId","author","rating","content"),
+            Projections.excludeId());
+    private final ReactiveMongoTemplate template;
+    // Shared by all requests, so that the driver keeps its codec lookups cached
+    private final CodecRegistry codecRegistry;
+    @Autowired
+    public RecommendationReader(ReactiveMongoTemplate template,ServiceUtil serviceUtil){
+        this.template = template;
+        this.codecRegistry = CodecRegistries.fromRegistries(
+                CodecRegistries.fromCodecs(new RecommendationCodec(serviceUtil::getServiceAddress)),
+                MongoClientSettings.getDefaultCodecRegistry());
+    }
+    /**
+     * Returns up to limit recommendations of the product after the given recommendationId.
+     */
+    public Flux<Recommendation> findByProductId(int productId,int afterRecommendationId,int limit){
+        return find(Filters.and(Filters.eq("productId",productId),Filters.gt("recommendationId",afterRecommendationId)),
+                Sorts.ascending("recommendationId"),limit);
+    }
+    /**
+     * Returns all recommendations of the products, bounded by the number of productIds of a batch read.
+     */
+    public Flux<Recommendation> findByProductIdIn(Collection<Integer> productIds){
+        return find(Filters.in("productId",productIds),Sorts.ascending("productId","recommendationId"),0);
+    }
+    private Flux<Recommendation> find(Bson filter,Bson sort,int limit){
+        return template.getCollection(COLLECTION)
+                .flatMapMany(collection -> {
+                    FindPublisher<Recommendation> publisher = collection
+                            .withDocumentClass(Recommendation.class)
+                            .withCodecRegistry(codecRegistry)
+                            .find(filter)
+                            .projection(PROJECTION)
+                            .sort(sort);
+                    return limit > 0 ? publisher.limit(limit) : publisher;
+                });
+    }
+    /**
+     * Maps the fields of the API to and from the recommendation documents, where the rate is stored as rating. The
+     * service address is not stored, decoded recommendations get the address of this instance.
+     */
+    private static class RecommendationCodec implements Codec<Recommendation> {
+        private final Supplier<String> serviceAddress;
+        RecommendationCodec(Supplier<String> serviceAddress){
+            this.serviceAddress = serviceAddress;
+        }
+        @Override
+        public Recommendation decode(BsonReader reader,DecoderContext decoderContext){
+            int productId = 0;
+            int recommendationId = 0;
+            String author = null;
+            int rate = 0;
+            String content = null;
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT){
+                String name = reader.readName();
+                if (reader.getCurrentBsonType() == BsonType.NULL){
+                    reader.readNull();
+                    continue;
+                }
+                switch (name){
+                    case "productId" -> productId = reader.readInt32();
+                    case "recommendationId" -> recommendationId = reader.readInt32();
+                    case "author" -> author = reader.readString();
+                    case "rating" -> rate = reader.readInt32();
+                    case "content" -> content = reader.readString();
+                    default -> reader.skipValue();
+                }
+            }
+            reader.readEndDocument();
+            return new Recommendation(productId,recommendationId,author,rate,content,serviceAddress.get());
+        }
+        @Override
+        public void encode(BsonWriter writer,Recommendation value,EncoderContext encoderContext){
+            writer.writeStartDocument();
+            writer.writeInt32("productId",value.getProductId());
+            writer.writeInt32("recommendationId",value.getRecommendationId());
+            writeString(writer,"author",value.getAuthor());
+            writer.writeInt32("rating",value.getRate());
+            writeString(writer,"content",value.getContent());
+            writer.writeEndDocument();
+        }
+        private static void writeString(BsonWriter writer,String name,String value){
+            if (value == null){
+                writer.writeNull(name);
+            }else{
+                writer.writeString(name,value);
+            }
+        }
+        @Override
+        public Class<Recommendation> getEncoderClass(){
+            return Recommendation.class;
+        }
+    }
+}
@@ -16,6 +16,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.logging.Level;
 
@@ -23,13 +24,16 @@ import java.util.logging.Level;
 public class RecommendationServiceImpl implements RecommendationService {
     private static final Logger LOG = LoggerFactory.getLogger(RecommendationServiceImpl.class);
     private final RecommendationRepository repository;
+    private final RecommendationReader reader;
     private final RecommendationMapper mapper;
     private final ServiceUtil serviceUtil;
     @Autowired
     public RecommendationServiceImpl(RecommendationRepository repository,
+                                     RecommendationReader reader,
                                      RecommendationMapper mapper,
                                      ServiceUtil serviceUtil){
         this.repository = repository;
+        this.reader = reader;
         this.mapper = mapper;
         this.serviceUtil = serviceUtil;
     }
@@ -55,22 +59,30 @@ public class RecommendationServiceImpl implements RecommendationService {
         }
         LOG.debug("deleteRecommendations: tries to delete recommendations for the product with productId: {}",
                 productId);
-        return repository.deleteAll(repository.findByProductId(productId));
+        return repository.deleteByProductId(productId)
+                .doOnNext(count -> LOG.debug("deleteRecommendations: deleted {} recommendations",count))
+                .then();
     }
 
     @Override
-    public Flux<Recommendation> getRecommendations(HttpHeaders headers,int productId) {
+    public Flux<Recommendation> getRecommendations(HttpHeaders headers,int productId,Integer afterRecommendationId,int pageSize) {
         if (productId < 1){
             throw new InvalidInputException("Invalid productId: " + productId);
         }
-        LOG.info("Will get recommendations for product with id={}",productId);
-        return repository.findByProductId(productId)
-                .log(LOG.getName(), Level.FINE)
-                .map(e -> mapper.entityToApi(e))
-                .map(e -> setServiceAddress(e));
+        serviceUtil.validatePageSize(pageSize);
+        LOG.info("Will get recommendations for product with id={}, afterRecommendationId={}, pageSize={}",
+                productId,afterRecommendationId,pageSize);
+        // Keyset paging, served by the unique (productId, recommendationId) index
+        int after = (afterRecommendationId == null) ? Integer.MIN_VALUE : afterRecommendationId;
+        return reader.findByProductId(productId,after,pageSize)
+                .log(LOG.getName(), Level.FINE);
     }
-    private Recommendation setServiceAddress(Recommendation e){
-        e.setServiceAddress(serviceUtil.getServiceAddress());
-        return e;
+
+    @Override
+    public Flux<Recommendation> getRecommendationsByProductIds(HttpHeaders headers,List<Integer> productIds) {
+        serviceUtil.validateProductIds(productIds);
+        LOG.info("Will get recommendations for {} products",productIds.size());
+        return reader.findByProductIdIn(new HashSet<>(productIds))
+                .log(LOG.getName(), Level.FINE);
     }
 }
@@ -49,6 +49,15 @@ public class PersistenceTests extends MongoDbTestBase{
         assertFalse(repository.existsById(savedEntity.getId()).block());
     }
     @Test
+    void deleteByProductId(){
+        repository.save(new RecommendationEntity(1,3,"a",3,"c")).block();
+        repository.save(new RecommendationEntity(2,1,"a",3,"c")).block();
+        assertEquals(2,(long)repository.deleteByProductId(1).block());
+        assertThat(repository.findByProductId(1).collectList().block(),hasSize(0));
+        assertThat(repository.findByProductId(2).collectList().block(),hasSize(1));
+        assertEquals(0,(long)repository.deleteByProductId(1).block());
+    }
+    @Test
     void getByProductId(){
         List<RecommendationEntity> entityList = repository.findByProductId(savedEntity.getProductId())
                 .collectList().block();
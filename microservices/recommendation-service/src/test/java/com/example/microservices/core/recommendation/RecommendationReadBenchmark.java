@@ -0,0 +1,97 @@
+package com.example.microservices.core.recommendation;
+
+import com.example.microservices.core.recommendation.persistence.RecommendationEntity;
+import com.example.microservices.core.recommendation.persistence.RecommendationRepository;
+import com.example.microservices.core.recommendation.services.RecommendationMapper;
+import com.example.microservices.core.recommendation.services.RecommendationReader;
+import org.bson.Document;
+import org.example.api.core.recommendation.Recommendation;
+import org.example.util.http.ServiceUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the bytes sent by MongoDB and the bytes allocated per getRecommendations request of the entity read path,
+ * full documents mapped through RecommendationMapper, with the projection read path of the RecommendationReader.
+ * Excluded from the test task, run it with {@code ./gradlew :microservices:recommendation-service:benchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE,
+properties = {})
+class RecommendationReadBenchmark extends MongoDbTestBase {
+	private static final int PRODUCTS = 50;
+	private static final int RECOMMENDATIONS_PER_PRODUCT = 100;
+	private static final int REQUESTS = 2_000;
+	@Autowired
+	private RecommendationRepository repository;
+	@Autowired
+	private RecommendationMapper mapper;
+	@Autowired
+	private RecommendationReader reader;
+	@Autowired
+	private ServiceUtil serviceUtil;
+	@Autowired
+	private ReactiveMongoTemplate template;
+	@BeforeEach
+	void setupDb(){
+		repository.deleteAll().block();
+		repository.saveAll(Flux.range(0,PRODUCTS * RECOMMENDATIONS_PER_PRODUCT)
+				.map(i -> new RecommendationEntity(1 + i / RECOMMENDATIONS_PER_PRODUCT,i % RECOMMENDATIONS_PER_PRODUCT,
+						"Author " + i,i % 5,"Content " + i)))
+				.blockLast();
+	}
+	@Test
+	void compareEntityAndProjectionReads(){
+		IntFunction<Flux<Recommendation>> entityPath = productId -> repository
+				.findByProductId(productId)
+				.map(mapper::entityToApi)
+				.map(recommendation -> {
+					recommendation.setServiceAddress(serviceUtil.getServiceAddress());
+					return recommendation;
+				});
+		IntFunction<Flux<Recommendation>> projectionPath = productId -> reader
+				.findByProductId(productId,Integer.MIN_VALUE,0);
+		// Warms up both paths before they are measured
+		measure(entityPath,REQUESTS / 10);
+		measure(projectionPath,REQUESTS / 10);
+		long[] entity = measure(entityPath,REQUESTS);
+		long[] projection = measure(projectionPath,REQUESTS);
+		System.out.printf("per request with %d recommendations, entity path: %d bytes from MongoDB, %d bytes allocated; "
+						+ "projection path: %d bytes from MongoDB, %d bytes allocated%n",
+				RECOMMENDATIONS_PER_PRODUCT,entity[0],entity[1],projection[0],projection[1]);
+	}
+	/**
+	 * Returns the bytes sent by MongoDB and the bytes allocated by all threads of the JVM, per request.
+	 */
+	private long[] measure(IntFunction<Flux<Recommendation>> readPath,int requests){
+		long bytesOut = mongoBytesOut();
+		long allocated = allocatedBytes();
+		for (int i = 0; i < requests; i++){
+			Long count = readPath.apply(1 + i % PRODUCTS).count().block();
+			assertEquals(RECOMMENDATIONS_PER_PRODUCT,count);
+		}
+		return new long[]{(mongoBytesOut() - bytesOut) / requests,(allocatedBytes() - allocated) / requests};
+	}
+	private long mongoBytesOut(){
+		Document status = template.executeCommand(new Document("serverStatus",1)).block();
+		return ((Number) status.get("network",Document.class).get("bytesOut")).longValue();
+	}
+	private static long allocatedBytes(){
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long total = 0;
+		for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())){
+			total += Math.max(allocated,0);
+		}
+		return total;
+	}
+}
@@ -12,8 +12,14 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -29,6 +35,9 @@ class RecommendationServiceApplicationTests extends MongoDbTestBase{
 	@Autowired
 	@Qualifier("messageProcessor")
 	private Consumer<MicroEvent<Integer,Recommendation>> messageProcessor;
+	@Autowired
+	@Qualifier("reactiveMessageProcessor")
+	private Function<Flux<MicroEvent<Integer,Recommendation>>,Mono<Void>> reactiveMessageProcessor;
 
 	@BeforeEach
 	void setupDb(){
@@ -47,6 +56,34 @@ class RecommendationServiceApplicationTests extends MongoDbTestBase{
 				.jsonPath("$[2].recommendationId").isEqualTo(3);
 	}
 	@Test
+	void getRecommendationsByProductIdPaged(){
+		int productId = 1;
+		sendCreateRecommendationEvent(productId,1);
+		sendCreateRecommendationEvent(productId,2);
+		sendCreateRecommendationEvent(productId,3);
+		getAndVerifyRecommendationsByProductId("?productId=" + productId + "&pageSize=2",HttpStatus.OK)
+				.jsonPath("$.length()").isEqualTo(2)
+				.jsonPath("$[1].recommendationId").isEqualTo(2);
+		getAndVerifyRecommendationsByProductId("?productId=" + productId + "&pageSize=2&afterRecommendationId=2",HttpStatus.OK)
+				.jsonPath("$.length()").isEqualTo(1)
+				.jsonPath("$[0].recommendationId").isEqualTo(3);
+	}
+	@Test
+	void processEventsReactively(){
+		// Creates and deletes of one product must stay in order, different products may interleave
+		Flux<MicroEvent<Integer,Recommendation>> events = Flux.range(1,3)
+				.concatMap(productId -> Flux.just(
+						createRecommendationEvent(productId,1),
+						createRecommendationEvent(productId,2),
+						new MicroEvent<>(MicroEvent.Type.DELETE,productId,null),
+						createRecommendationEvent(productId,3)));
+		reactiveMessageProcessor.apply(events).block(Duration.ofSeconds(10));
+		assertEquals(3,(long)repository.count().block());
+		for (int productId = 1; productId <= 3; productId++){
+			assertEquals(3,repository.findByProductId(productId).blockFirst().getRecommendationId());
+		}
+	}
+	@Test
 	void duplicateError(){
 		int productId = 1;
 		int recommendationId = 1;
@@ -72,6 +109,30 @@ class RecommendationServiceApplicationTests extends MongoDbTestBase{
 		sendDeleteRecommendationEvent(productId);
 	}
 	@Test
+	void getRecommendationsByProductIds(){
+		sendCreateRecommendationEvent(1,1);
+		sendCreateRecommendationEvent(2,1);
+		sendCreateRecommendationEvent(2,2);
+		sendCreateRecommendationEvent(3,1);
+		getAndVerifyRecommendationsByProductId("?productIds=2,1",HttpStatus.OK)
+				.jsonPath("$.length()").isEqualTo(3)
+				.jsonPath("$[0].productId").isEqualTo(1)
+				.jsonPath("$[1].productId").isEqualTo(2)
+				.jsonPath("$[2].productId").isEqualTo(2)
+				.jsonPath("$[2].recommendationId").isEqualTo(2);
+	}
+	@Test
+	void getRecommendationsTooManyProductIds(){
+		String productIds = IntStream.rangeClosed(1,101).mapToObj(String::valueOf).collect(Collectors.joining(","));
+		getAndVerifyRecommendationsByProductId("?productIds=" + productIds,HttpStatus.UNPROCESSABLE_ENTITY)
+				.jsonPath("$.message").isEqualTo("Too many productIds: 101, max is 100");
+	}
+	@Test
+	void getRecommendationsInvalidProductIds(){
+		getAndVerifyRecommendationsByProductId("?productIds=1,0",HttpStatus.UNPROCESSABLE_ENTITY)
+				.jsonPath("$.message").isEqualTo("Invalid productId: 0");
+	}
+	@Test
 	void getRecommendationsMissingParameter(){
 		getAndVerifyRecommendationsByProductId("",HttpStatus.BAD_REQUEST)
 				.jsonPath("$.path").isEqualTo("/recommendation")
@@ -138,10 +199,12 @@ class RecommendationServiceApplicationTests extends MongoDbTestBase{
 				.expectBody();
 	}
 	private void sendCreateRecommendationEvent(int productId,int recommendationId){
+		messageProcessor.accept(createRecommendationEvent(productId,recommendationId));
+	}
+	private MicroEvent<Integer,Recommendation> createRecommendationEvent(int productId,int recommendationId){
 		Recommendation recommendation = new Recommendation(productId,recommendationId,"Author " + recommendationId,
 				recommendationId,"Content " + recommendationId,"SA");
-		MicroEvent<Integer,Recommendation> event = new MicroEvent<>(MicroEvent.Type.CREATE,productId,recommendation);
-		messageProcessor.accept(event);
+		return new MicroEvent<>(MicroEvent.Type.CREATE,productId,recommendation);
 	}
 	private void sendDeleteRecommendationEvent(int productId){
 		MicroEvent<Integer,Recommendation> event = new MicroEvent<>(MicroEvent.Type.DELETE,productId,null);
@@ -1,6 +1,7 @@
 package com.example.microservices.core.review.services;
 
 import com.example.microservices.core.review.persistence.ReviewEntity;
+import com.example.microservices.core.review.persistence.ReviewRow;
 import java.util.ArrayList;
 import java.util.List;
 import javax.annotation.processing.Generated;
@@ -76,4 +77,38 @@ public class ReviewMapperImpl implements ReviewMapper {
 
         return list;
     }
+
+    @Override
+    public Review rowToApi(ReviewRow row) {
+        if ( row == null ) {
+            return null;
+        }
+
+        Review review = new Review();
+
+        review.setProductId( row.getProductId() );
+        review.setReviewId( row.getReviewId() );
+        review.setAuthor( row.getAuthor() );
+        review.setSubject( row.getSubject() );
+        review.setContent( row.getContent() );
+
+        return review;
+    }
+
+    @Override
+    public ReviewRow apiToRow(Review api) {
+        if ( api == null ) {
+            return null;
+        }
+
+        ReviewRow reviewRow = new ReviewRow();
+
+        reviewRow.setProductId( api.getProductId() );
+        reviewRow.setReviewId( api.getReviewId() );
+        reviewRow.setAuthor( api.getAuthor() );
+        reviewRow.setSubject( api.getSubject() );
+        reviewRow.setContent( api.getContent() );
+
+        return reviewRow;
+    }
 }
@@ -1,5 +1,6 @@
 package com.example.microservices.core.review;
 
+import org.example.util.concurrent.VirtualThreads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -10,7 +11,6 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import reactor.core.publisher.Hooks;
 import reactor.core.scheduler.Scheduler;
-import reactor.core.scheduler.Schedulers;
 
 @SpringBootApplication
 @ComponentScan({"com.example","org.example"})
@@ -18,17 +18,21 @@ public class ReviewServiceApplication {
 	private static final Logger LOG = LoggerFactory.getLogger(ReviewServiceApplication.class);
 	private final Integer threadPoolSize;
 	private final Integer taskQueueSize;
+	private final boolean virtualThreads;
 	public ReviewServiceApplication(
 			@Value("${app.threadPoolSize:10}") Integer threadPoolSize,
-			@Value("${app.taskQueueSize:100}") Integer taskQueueSize
+			@Value("${app.taskQueueSize:100}") Integer taskQueueSize,
+			@Value("${app.virtualThreads.enabled:false}") boolean virtualThreads
 	){
 		this.threadPoolSize = threadPoolSize;
 		this.taskQueueSize = taskQueueSize;
+		this.virtualThreads = virtualThreads;
 	}
 	@Bean
 	public Scheduler jdbcScheduler(){
-		LOG.info("Creates a jdbcScheduler with thread pool size = {}",threadPoolSize);
-		return Schedulers.newBoundedElastic(threadPoolSize,taskQueueSize,"jdbc-pool");
+		// On virtual threads the number of concurrent queries is bound by the Hikari pool instead of threadPoolSize
+		LOG.info("Creates a jdbcScheduler with thread pool size = {}, virtual threads = {}",threadPoolSize,virtualThreads);
+		return VirtualThreads.newBoundedElasticOrVirtual(virtualThreads,threadPoolSize,taskQueueSize,"jdbc-pool");
 	}
 
 	public static void main(String[] args) {
@@ -0,0 +1,16 @@
+package com.example.microservices.core.review.persistence;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface ReactiveReviewRepository extends ReactiveCrudRepository<ReviewRow,Integer> {
+    Flux<ReviewRow> findByProductId(int productId);
+    Flux<ReviewRow> findByProductIdAndReviewIdGreaterThan(int productId, int reviewId, Pageable pageable);
+    Flux<ReviewRow> findByProductIdIn(Collection<Integer> productIds, Sort sort);
+    Mono<Integer> deleteByProductId(int productId);
+}
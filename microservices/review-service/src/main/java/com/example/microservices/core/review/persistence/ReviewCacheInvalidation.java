@@ -0,0 +1,63 @@
+package com.example.microservices.core.review.persistence;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Invalidates the cached review queries of every instance when the second-level cache is enabled, the l2_cache
+ * profile. Hibernate only invalidates the query cache of the instance that wrote the reviews, so after a write is
+ * committed the productIds are published on the review-cache-invalidations destination. Every instance, the writer
+ * included, consumes it with reviewCacheEvictor in an anonymous group and evicts its query region.
+ * The whole region is evicted, like Hibernate does locally for a write to the reviews table. The entity region is
+ * left alone, reviews are never updated and a recreated review gets a new id.
+ */
+@Configuration
+public class ReviewCacheInvalidation {
+    private static final Logger LOG = LoggerFactory.getLogger(ReviewCacheInvalidation.class);
+    private static final String BINDING = "reviewCacheInvalidations-out-0";
+    private final StreamBridge streamBridge;
+    private final EntityManagerFactory entityManagerFactory;
+    private final boolean enabled;
+    @Autowired
+    public ReviewCacheInvalidation(StreamBridge streamBridge,EntityManagerFactory entityManagerFactory,
+                                   @Value("${spring.jpa.properties.hibernate.cache.use_query_cache:false}") boolean enabled){
+        this.streamBridge = streamBridge;
+        this.entityManagerFactory = entityManagerFactory;
+        this.enabled = enabled;
+    }
+    /**
+     * Publishes that the reviews of the products were written, call it once the write is committed. A failed send
+     * is only logged, the other instances then serve the cached queries until they expire, see application.conf.
+     */
+    public void written(Collection<Integer> productIds){
+        if (!enabled || productIds.isEmpty()){
+            return;
+        }
+        try{
+            if (!streamBridge.send(BINDING,List.copyOf(productIds))){
+                LOG.warn("Failed to publish the cache invalidation of the reviews of {} products",productIds.size());
+            }
+        }catch (RuntimeException ex){
+            LOG.warn("Failed to publish the cache invalidation of the reviews of {} products: {}",productIds.size(),ex.toString());
+        }
+    }
+    @Bean
+    public Consumer<List<Integer>> reviewCacheEvictor(){
+        return productIds -> {
+            LOG.debug("Evicts the cached review queries, reviews of {} products were written",productIds.size());
+            entityManagerFactory.unwrap(SessionFactory.class).getCache()
+                    .evictQueryRegion(ReviewRepository.QUERY_CACHE_REGION);
+        };
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.microservices.core.review.persistence;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Publishes the hits, misses and the hit ratio of the review entity region and the review query region of the
+ * Hibernate second-level cache as hibernate.cache.requests and hibernate.cache.hit.ratio, tagged with the region.
+ * Only created when the second-level cache is enabled, the l2_cache profile.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.jpa.properties.hibernate.cache.use_second_level_cache",havingValue = "true")
+public class ReviewCacheMetricsConfig {
+    private static final Logger LOG = LoggerFactory.getLogger(ReviewCacheMetricsConfig.class);
+    private final Statistics statistics;
+    public ReviewCacheMetricsConfig(EntityManagerFactory entityManagerFactory,MeterRegistry meterRegistry){
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        if (!statistics.isStatisticsEnabled()){
+            LOG.info("Enables Hibernate statistics for the second-level cache metrics");
+            statistics.setStatisticsEnabled(true);
+        }
+        register(meterRegistry,ReviewEntity.CACHE_REGION,this::entityRegion);
+        register(meterRegistry,ReviewRepository.QUERY_CACHE_REGION,this::queryRegion);
+    }
+    private void register(MeterRegistry meterRegistry,String region,
+                          Function<String,CacheRegionStatistics> regionStatistics){
+        ToLongFunction<CacheRegionStatistics> hits = CacheRegionStatistics::getHitCount;
+        ToLongFunction<CacheRegionStatistics> misses = CacheRegionStatistics::getMissCount;
+        FunctionCounter.builder("hibernate.cache.requests",region,r -> count(regionStatistics.apply(r),hits))
+                .description("Number of lookups in the second-level cache region")
+                .tag("region",region)
+                .tag("result","hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("hibernate.cache.requests",region,r -> count(regionStatistics.apply(r),misses))
+                .description("Number of lookups in the second-level cache region")
+                .tag("region",region)
+                .tag("result","miss")
+                .register(meterRegistry);
+        Gauge.builder("hibernate.cache.hit.ratio",region,r -> hitRatio(regionStatistics.apply(r)))
+                .description("Share of the lookups in the second-level cache region that were hits")
+                .tag("region",region)
+                .register(meterRegistry);
+    }
+    private CacheRegionStatistics entityRegion(String region){
+        try{
+            return statistics.getDomainDataRegionStatistics(region);
+        }catch (IllegalArgumentException ex){
+            return null;
+        }
+    }
+    private CacheRegionStatistics queryRegion(String region){
+        // Null until the first query of the region is cached
+        return statistics.getQueryRegionStatistics(region);
+    }
+    private static double count(CacheRegionStatistics regionStatistics,ToLongFunction<CacheRegionStatistics> count){
+        return regionStatistics == null ? 0 : count.applyAsLong(regionStatistics);
+    }
+    private static double hitRatio(CacheRegionStatistics regionStatistics){
+        if (regionStatistics == null){
+            return Double.NaN;
+        }
+        long requests = regionStatistics.getHitCount() + regionStatistics.getMissCount();
+        return requests == 0 ? Double.NaN : (double) regionStatistics.getHitCount() / requests;
+    }
+}
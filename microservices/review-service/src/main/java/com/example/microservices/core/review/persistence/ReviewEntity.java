@@ -1,12 +1,22 @@
 package com.example.microservices.core.review.persistence;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.data.jpa.repository.Lock;
 
+// Cached in the second-level cache when it is enabled, the l2_cache profile
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE,region = ReviewEntity.CACHE_REGION)
 @Table(name = "reviews",indexes = {@Index(name = "reviews_unique_idx",unique = true,columnList = "productId,reviewId")})
 public class ReviewEntity {
-    @Id @GeneratedValue
+    public static final String CACHE_REGION = "reviews";
+    // A pooled sequence (a table on MySQL) hands out ids in blocks, unlike IDENTITY it lets Hibernate batch inserts.
+    // Same name and increment as the implicit generator that was used before, so existing ids are not reused.
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE,generator = "review_id_generator")
+    @SequenceGenerator(name = "review_id_generator",sequenceName = "ReviewEntity_SEQ",allocationSize = 50)
     private int id;
     @Version
     private int version;
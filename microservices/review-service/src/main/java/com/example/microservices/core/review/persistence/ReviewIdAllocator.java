@@ -0,0 +1,97 @@
+package com.example.microservices.core.review.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hands out review ids over R2DBC from the table that emulates the ReviewEntity_SEQ sequence on MySQL, so that rows
+ * inserted in the r2dbc and the jpa persistence mode never share an id. Like Hibernate's pooled optimizer, a value read
+ * from the table is the last id of a block of {@link #ALLOCATION_SIZE} ids, the table is then moved past the block.
+ */
+@Component
+public class ReviewIdAllocator {
+    private static final Logger LOG = LoggerFactory.getLogger(ReviewIdAllocator.class);
+    // The naming strategy of Spring Boot turns the sequence name ReviewEntity_SEQ into this table name
+    private static final String SEQUENCE_TABLE = "review_entity_seq";
+    // Same as the allocationSize of the id generator of ReviewEntity
+    static final int ALLOCATION_SIZE = 50;
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private int next = 1;
+    private int last = 0;
+    public ReviewIdAllocator(DatabaseClient databaseClient,ReactiveTransactionManager transactionManager){
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = TransactionalOperator.create(transactionManager);
+    }
+    public Mono<Integer> nextId(){
+        return nextIds(1).map(ids -> ids.get(0));
+    }
+    public Mono<List<Integer>> nextIds(int count){
+        return Mono.defer(() -> {
+            List<Integer> ids = new ArrayList<>(count);
+            take(ids,count);
+            if (ids.size() == count){
+                return Mono.just(ids);
+            }
+            // Allocates all missing ids in one round trip, also for a chunk of the bulk ingest path
+            int missing = count - ids.size();
+            return allocateBlocks((missing + ALLOCATION_SIZE - 1) / ALLOCATION_SIZE)
+                    .flatMap(block -> {
+                        int end = Math.min(block[1],block[0] + missing - 1);
+                        for (int id = block[0]; id <= end; id++){
+                            ids.add(id);
+                        }
+                        refill(end + 1,block[1]);
+                        if (ids.size() == count){
+                            return Mono.just(ids);
+                        }
+                        // The first block of a new table is shorter
+                        return nextIds(count - ids.size()).map(rest -> {
+                            ids.addAll(rest);
+                            return ids;
+                        });
+                    });
+        });
+    }
+    private synchronized void take(List<Integer> ids,int count){
+        while (ids.size() < count && next <= last){
+            ids.add(next++);
+        }
+    }
+    private synchronized void refill(int first,int lastId){
+        // Ids left in the pool by a concurrent refill are skipped, that only leaves a gap
+        next = first;
+        last = lastId;
+    }
+    /**
+     * Moves the sequence table past the given number of blocks and returns the first and last id of them.
+     */
+    private Mono<int[]> allocateBlocks(int blocks){
+        return databaseClient.sql("SELECT next_val FROM " + SEQUENCE_TABLE + " FOR UPDATE")
+                .map(row -> row.get("next_val",Long.class))
+                .one()
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException(
+                        "Table " + SEQUENCE_TABLE + " is empty, the schema is created by Hibernate in the jpa mode")))
+                .flatMap(value -> databaseClient.sql("UPDATE " + SEQUENCE_TABLE + " SET next_val = :next WHERE next_val = :value")
+                        .bind("next",value + (long) blocks * ALLOCATION_SIZE)
+                        .bind("value",value)
+                        .fetch()
+                        .rowsUpdated()
+                        .map(updated -> {
+                            // The first value of a new table is 1, Hibernate then starts its first block at 1 as well
+                            int first = (int) Math.max(value - ALLOCATION_SIZE + 1,1);
+                            int lastId = (int) (value + (long) (blocks - 1) * ALLOCATION_SIZE);
+                            LOG.debug("Allocated review ids {} to {}",first,lastId);
+                            return new int[]{first,lastId};
+                        }))
+                .as(transactionalOperator::transactional);
+    }
+}
@@ -1,11 +1,38 @@
 package com.example.microservices.core.review.persistence;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
+// Names the JPA transaction manager, the R2DBC one of the r2dbc persistence mode is a TransactionManager as well.
+// The by-product queries are cached in the query cache when it is enabled, the l2_cache profile. Hibernate invalidates
+// the cached results whenever a review is written through JPA, the bulk delete included, other instances evict theirs
+// through ReviewCacheInvalidation.
 public interface ReviewRepository extends CrudRepository<ReviewEntity,Integer> {
-    @Transactional(readOnly = true)
+    String QUERY_CACHE_REGION = "review-queries";
+    @Transactional(transactionManager = "transactionManager",readOnly = true)
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE,value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION,value = QUERY_CACHE_REGION)})
     List<ReviewEntity> findByProductId(int productId);
+    @Transactional(transactionManager = "transactionManager",readOnly = true)
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE,value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION,value = QUERY_CACHE_REGION)})
+    List<ReviewEntity> findByProductIdAndReviewIdGreaterThan(int productId, int reviewId, Pageable pageable);
+    @Transactional(transactionManager = "transactionManager",readOnly = true)
+    List<ReviewEntity> findByProductIdIn(Collection<Integer> productIds, Sort sort);
+    // A derived deleteBy query loads and removes the entities one by one, the bulk delete is a single statement
+    @Modifying
+    @Transactional(transactionManager = "transactionManager")
+    @Query("delete from ReviewEntity r where r.productId = :productId")
+    int deleteByProductId(@Param("productId") int productId);
 }
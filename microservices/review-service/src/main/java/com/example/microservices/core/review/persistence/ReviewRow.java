@@ -0,0 +1,81 @@
+package com.example.microservices.core.review.persistence;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * R2DBC mapping of the reviews table of {@link ReviewEntity}, used in the r2dbc persistence mode. Hibernate still
+ * owns the schema. The id is assigned by the {@link ReviewIdAllocator} before the row is inserted.
+ */
+@Table("reviews")
+public class ReviewRow {
+    @Id
+    private Integer id;
+    @Version
+    private Integer version;
+    private int productId;
+    private int reviewId;
+    private String author;
+    private String subject;
+    private String content;
+    public ReviewRow(){
+
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public void setProductId(int productId) {
+        this.productId = productId;
+    }
+
+    public int getReviewId() {
+        return reviewId;
+    }
+
+    public void setReviewId(int reviewId) {
+        this.reviewId = reviewId;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public void setAuthor(String author) {
+        this.author = author;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+}
@@ -4,44 +4,98 @@ import org.example.api.core.review.Review;
 import org.example.api.core.review.ReviewService;
 import org.example.api.event.MicroEvent;
 import org.example.api.exceptions.EventProcessingException;
+import org.example.util.messaging.EventDeduplicator;
+import org.example.util.messaging.EventMetrics;
+import org.example.util.messaging.MessageProcessors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Configuration
 public class MessageProcessorConfig {
     private static final Logger LOG = LoggerFactory.getLogger(MessageProcessorConfig.class);
+    private static final String DLQ_BINDING = "reviewsDlq-out-0";
     private final ReviewService reviewService;
+    private final EventDeduplicator deduplicator;
+    private final EventMetrics eventMetrics;
+    private final MessageProcessors messageProcessors;
     @Autowired
-    public MessageProcessorConfig(ReviewService reviewService){
+    public MessageProcessorConfig(ReviewService reviewService,EventDeduplicator deduplicator,EventMetrics eventMetrics,
+                                  MessageProcessors messageProcessors){
         this.reviewService = reviewService;
+        this.deduplicator = deduplicator;
+        this.eventMetrics = eventMetrics;
+        this.messageProcessors = messageProcessors;
     }
+    /**
+     * Processes one event at a time, see {@link MessageProcessors#blocking}.
+     */
     @Bean
-    public Consumer<MicroEvent<Integer, Review>> messageProcessor(){
-        return event -> {
-            LOG.info("Process message created at {}...",event.getEventCreatedAt());
-            switch (event.getEventType()){
-                case CREATE -> {
-                    Review review = event.getData();
-                    LOG.info("Create review with ID: {}/{}",review.getProductId(),review.getReviewId());
-                    reviewService.createReview(review).block();
-                }
-                case DELETE -> {
-                    int productId = event.getKey();
-                    LOG.info("Delete reviews with ProductID: {}",productId);
-                    reviewService.deleteReviews(productId).block();
-                }
-                default -> {
-                    String errorMessage = "Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event";
-                    LOG.warn(errorMessage);
-                    throw new EventProcessingException(errorMessage);
+    public Consumer<MicroEvent<Integer,Review>> messageProcessor(){
+        return messageProcessors.blocking(reviewService::createReview,reviewService::deleteReviews);
+    }
+
+    /**
+     * Batch mode of the messageProcessor, enabled by the batch_consumer profile. Consecutive CREATE events are written
+     * through the bulk ingest path, the order between creates and deletes is kept.
+     */
+    @Bean
+    public Consumer<List<MicroEvent<Integer,Review>>> batchMessageProcessor(){
+        return batch -> {
+            List<MicroEvent<Integer,Review>> events = messageProcessors.withoutDuplicates(batch);
+            LOG.info("Process a batch of {} messages, skipped {} duplicates...",events.size(),batch.size() - events.size());
+            int start = 0;
+            while (start < events.size()){
+                MicroEvent.Type type = events.get(start).getEventType();
+                int end = start + 1;
+                while (end < events.size() && events.get(end).getEventType() == type){
+                    end++;
                 }
+                List<MicroEvent<Integer,Review>> run = events.subList(start,end);
+                eventMetrics.record(type,() -> {
+                    if (type == MicroEvent.Type.CREATE){
+                        reviewService.createReviews(Flux.fromIterable(run).map(MicroEvent::getData)).block();
+                    }else if (type == MicroEvent.Type.DELETE){
+                        run.forEach(event -> reviewService.deleteReviews(event.getKey()).block());
+                    }else if (type == MicroEvent.Type.REPLACE){
+                        run.forEach(event -> reviewService.deleteReviews(event.getKey()).block());
+                        reviewService.createReviews(Flux.fromIterable(run).map(MicroEvent::getData)).block();
+                    }else{
+                        String errorMessage = "Incorrect event type: " + type + ", expected a CREATE, DELETE or REPLACE event";
+                        LOG.warn(errorMessage);
+                        throw new EventProcessingException(errorMessage);
+                    }
+                });
+                run.forEach(event -> deduplicator.markProcessed(event.getEventId()));
+                start = end;
             }
-            LOG.info("Message processing done!");
+            LOG.info("Batch processing done!");
         };
     }
+
+    /**
+     * Reactive mode of the messageProcessor, enabled by the reactive_consumer profile, see
+     * {@link MessageProcessors#reactive}.
+     */
+    @Bean
+    public Function<Flux<MicroEvent<Integer,Review>>,Mono<Void>> reactiveMessageProcessor(){
+        return messageProcessors.reactive(DLQ_BINDING,reviewService::createReview,reviewService::deleteReviews);
+    }
+
+    /**
+     * Parallel mode of the messageProcessor, enabled by the parallel_consumer profile, see
+     * {@link MessageProcessors#parallel}.
+     */
+    @Bean
+    public Consumer<List<MicroEvent<Integer,Review>>> parallelMessageProcessor(){
+        return messageProcessors.parallel(DLQ_BINDING,reviewService::createReview,reviewService::deleteReviews);
+    }
 }
@@ -0,0 +1,177 @@
+package com.example.microservices.core.review.services;
+
+import com.example.microservices.core.review.persistence.ReactiveReviewRepository;
+import com.example.microservices.core.review.persistence.ReviewIdAllocator;
+import com.example.microservices.core.review.persistence.ReviewRow;
+import org.example.api.core.review.Review;
+import org.example.api.core.review.ReviewService;
+import org.example.api.exceptions.InvalidInputException;
+import org.example.util.http.ServiceUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * The review service in the r2dbc persistence mode, enabled by the r2dbc profile. Queries run non-blocking on the
+ * event loop through R2DBC instead of on the jdbcScheduler, so the number of concurrent queries is only bound by the
+ * R2DBC connection pool.
+ */
+@RestController
+@ConditionalOnProperty(name = "app.persistence",havingValue = "r2dbc")
+public class R2dbcReviewServiceImpl implements ReviewService {
+    private static final Logger LOG = LoggerFactory.getLogger(R2dbcReviewServiceImpl.class);
+    private static final Sort KEYSET_SORT = Sort.by("reviewId");
+    private final ReactiveReviewRepository repository;
+    private final ReviewIdAllocator idAllocator;
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final ReviewMapper mapper;
+    private final ServiceUtil serviceUtil;
+    private final int chunkSize;
+
+    @Autowired
+    public R2dbcReviewServiceImpl(ReactiveReviewRepository repository,ReviewIdAllocator idAllocator,
+                                  DatabaseClient databaseClient,ReactiveTransactionManager transactionManager,
+                                  ReviewMapper mapper,ServiceUtil serviceUtil,
+                                  @Value("${app.bulkInsert.chunkSize:500}") int chunkSize) {
+        this.repository = repository;
+        this.idAllocator = idAllocator;
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = TransactionalOperator.create(transactionManager);
+        this.mapper = mapper;
+        this.serviceUtil = serviceUtil;
+        this.chunkSize = chunkSize;
+        LOG.info("Creates a review service with R2DBC persistence, chunkSize = {}",chunkSize);
+    }
+
+    @Override
+    public Mono<Review> createReview(Review body) {
+        if (body.getProductId() < 1){
+            throw new InvalidInputException("Invalid productId: " + body.getProductId());
+        }
+        ReviewRow row = mapper.apiToRow(body);
+        return idAllocator.nextId()
+                .flatMap(id -> {
+                    row.setId(id);
+                    return repository.save(row);
+                })
+                .doOnNext(saved -> LOG.debug("createReview: create a review row: {}/{}",body.getProductId(),body.getReviewId()))
+                .map(mapper::rowToApi)
+                .onErrorMap(DataIntegrityViolationException.class,
+                        ex -> new InvalidInputException("Duplicate key, Product Id: " + body.getProductId() + ", Review Id: " + body.getReviewId()));
+    }
+
+    @Override
+    public Mono<Long> createReviews(Flux<Review> body) {
+        return body
+                .doOnNext(review -> {
+                    if (review.getProductId() < 1){
+                        throw new InvalidInputException("Invalid productId: " + review.getProductId());
+                    }
+                })
+                .buffer(chunkSize)
+                .concatMap(this::insertChunk)
+                .reduce(0L,Long::sum)
+                .doOnNext(count -> LOG.info("Bulk inserted {} reviews",count));
+    }
+    /**
+     * Inserts the chunk with one multi-row insert. If the chunk contains a duplicate the reviews are inserted one by one
+     * instead, skipping the duplicates, like the jpa mode does.
+     */
+    private Mono<Long> insertChunk(List<Review> reviews){
+        return idAllocator.nextIds(reviews.size())
+                .flatMap(ids -> insertRows(reviews,ids).as(transactionalOperator::transactional))
+                .doOnNext(count -> LOG.debug("Inserted a chunk of {} reviews",count))
+                .onErrorResume(DataIntegrityViolationException.class,ex -> {
+                    LOG.warn("Chunk of {} reviews contains a duplicate, inserts them one by one",reviews.size());
+                    return insertOneByOne(reviews);
+                });
+    }
+    private Mono<Long> insertRows(List<Review> reviews,List<Integer> ids){
+        StringBuilder sql = new StringBuilder("INSERT INTO reviews (id,version,product_id,review_id,author,subject,content) VALUES ");
+        for (int i = 0; i < reviews.size(); i++){
+            sql.append(i == 0 ? "" : ",")
+                    .append("(:id").append(i).append(",0,:productId").append(i).append(",:reviewId").append(i)
+                    .append(",:author").append(i).append(",:subject").append(i).append(",:content").append(i).append(")");
+        }
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+        for (int i = 0; i < reviews.size(); i++){
+            Review review = reviews.get(i);
+            spec = spec.bind("id" + i,ids.get(i))
+                    .bind("productId" + i,review.getProductId())
+                    .bind("reviewId" + i,review.getReviewId());
+            spec = bindText(spec,"author" + i,review.getAuthor());
+            spec = bindText(spec,"subject" + i,review.getSubject());
+            spec = bindText(spec,"content" + i,review.getContent());
+        }
+        return spec.fetch().rowsUpdated();
+    }
+    private static DatabaseClient.GenericExecuteSpec bindText(DatabaseClient.GenericExecuteSpec spec,String name,String value){
+        return value == null ? spec.bindNull(name,String.class) : spec.bind(name,value);
+    }
+    private Mono<Long> insertOneByOne(List<Review> reviews){
+        return Flux.fromIterable(reviews)
+                .concatMap(review -> createReview(review)
+                        .map(created -> 1L)
+                        .onErrorResume(InvalidInputException.class,ex -> {
+                            LOG.warn("Skips duplicate review, Product Id: {}, Review Id: {}",review.getProductId(),review.getReviewId());
+                            return Mono.just(0L);
+                        }))
+                .reduce(0L,Long::sum);
+    }
+
+    @Override
+    public Mono<Void> deleteReviews(int productId) {
+        if (productId < 1){
+            throw new InvalidInputException("Invalid productId: " + productId);
+        }
+        LOG.debug("deleteReviews: tries to delete reviews for the product with productId: {}",productId);
+        return repository.deleteByProductId(productId)
+                .doOnNext(count -> LOG.debug("deleteReviews: deleted {} reviews",count))
+                .then();
+    }
+
+    @Override
+    public Flux<Review> getReviews(HttpHeaders headers, int productId, Integer afterReviewId, int pageSize) {
+        if (productId < 1){
+            throw new InvalidInputException("Invalid productId: " + productId);
+        }
+        serviceUtil.validatePageSize(pageSize);
+        LOG.info("Will get reviews for product with id={}, afterReviewId={}, pageSize={}",productId,afterReviewId,pageSize);
+        // Keyset paging, served by the unique (productId, reviewId) index
+        int after = (afterReviewId == null) ? Integer.MIN_VALUE : afterReviewId;
+        return repository.findByProductIdAndReviewIdGreaterThan(productId,after,PageRequest.of(0,pageSize,KEYSET_SORT))
+                .map(this::toApi)
+                .log(LOG.getName(), Level.FINE);
+    }
+
+    @Override
+    public Flux<Review> getReviewsByProductIds(HttpHeaders headers,List<Integer> productIds) {
+        serviceUtil.validateProductIds(productIds);
+        LOG.info("Will get reviews for {} products",productIds.size());
+        return repository.findByProductIdIn(new HashSet<>(productIds),Sort.by("productId","reviewId"))
+                .map(this::toApi)
+                .log(LOG.getName(), Level.FINE);
+    }
+    private Review toApi(ReviewRow row){
+        Review review = mapper.rowToApi(row);
+        review.setServiceAddress(serviceUtil.getServiceAddress());
+        return review;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.microservices.core.review.services;
+
+import com.example.microservices.core.review.persistence.ReviewEntity;
+import com.example.microservices.core.review.persistence.ReviewRepository;
+import org.example.api.core.review.Review;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Inserts reviews in chunks, one transaction per chunk. With hibernate.jdbc.batch_size set and rewriteBatchedStatements
+ * enabled on the MySQL driver, a chunk is sent as a few multi-row inserts instead of one statement per review.
+ */
+@Component
+public class ReviewBulkWriter {
+    private static final Logger LOG = LoggerFactory.getLogger(ReviewBulkWriter.class);
+    private final ReviewRepository repository;
+    private final ReviewMapper mapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    @Autowired
+    public ReviewBulkWriter(ReviewRepository repository,ReviewMapper mapper,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${app.bulkInsert.chunkSize:500}") int chunkSize){
+        this.repository = repository;
+        this.mapper = mapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        LOG.info("Creates a review bulk writer with chunkSize = {}",chunkSize);
+    }
+    public int getChunkSize(){
+        return chunkSize;
+    }
+    /**
+     * Inserts the chunk in a single transaction and returns the number of inserted reviews. If the chunk contains a
+     * duplicate the reviews are inserted one by one instead, skipping the duplicates, so that a backfill can be rerun.
+     */
+    public int insertChunk(List<Review> reviews){
+        List<ReviewEntity> entities = mapper.apiListToEntityList(reviews);
+        try{
+            transactionTemplate.executeWithoutResult(status -> repository.saveAll(entities));
+            LOG.debug("Inserted a chunk of {} reviews",entities.size());
+            return entities.size();
+        }catch (DataIntegrityViolationException ex){
+            LOG.warn("Chunk of {} reviews contains a duplicate, inserts them one by one",reviews.size());
+            return insertOneByOne(reviews);
+        }
+    }
+    private int insertOneByOne(List<Review> reviews){
+        int inserted = 0;
+        for (Review review : reviews){
+            try{
+                repository.save(mapper.apiToEntity(review));
+                inserted++;
+            }catch (DataIntegrityViolationException ex){
+                LOG.warn("Skips duplicate review, Product Id: {}, Review Id: {}",review.getProductId(),review.getReviewId());
+            }
+        }
+        return inserted;
+    }
+}
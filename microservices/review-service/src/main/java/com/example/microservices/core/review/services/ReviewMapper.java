@@ -1,6 +1,7 @@
 package com.example.microservices.core.review.services;
 
 import com.example.microservices.core.review.persistence.ReviewEntity;
+import com.example.microservices.core.review.persistence.ReviewRow;
 import org.example.api.core.review.Review;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
@@ -21,4 +22,13 @@ public interface ReviewMapper {
     ReviewEntity apiToEntity(Review api);
     List<Review> entityListToApiList(List<ReviewEntity> entity);
     List<ReviewEntity> apiListToEntityList(List<Review> api);
+    @Mappings({
+            @Mapping(target = "serviceAddress",ignore = true)
+    })
+    Review rowToApi(ReviewRow row);
+    @Mappings({
+            @Mapping(target = "id",ignore = true),
+            @Mapping(target = "version",ignore = true)
+    })
+    ReviewRow apiToRow(Review api);
 }
@@ -1,5 +1,6 @@
 package com.example.microservices.core.review.services;
 
+import com.example.microservices.core.review.persistence.ReviewCacheInvalidation;
 import com.example.microservices.core.review.persistence.ReviewEntity;
 import com.example.microservices.core.review.persistence.ReviewRepository;
 import org.example.api.core.review.Review;
@@ -10,7 +11,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
@@ -19,25 +23,35 @@ import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.logging.Level;
+import java.util.stream.Collectors;
 
 @RestController
+@ConditionalOnProperty(name = "app.persistence",havingValue = "jpa",matchIfMissing = true)
 public class ReviewServiceImpl implements ReviewService {
     private static final Logger LOG = LoggerFactory.getLogger(ReviewServiceImpl.class);
+    private static final Sort KEYSET_SORT = Sort.by("reviewId");
     private final ReviewRepository repository;
     private final ReviewMapper mapper;
     private final ServiceUtil serviceUtil;
     private final Scheduler jdbcScheduler;
+    private final ReviewBulkWriter bulkWriter;
+    private final ReviewCacheInvalidation cacheInvalidation;
 
     @Autowired
     public ReviewServiceImpl(ReviewRepository repository,ReviewMapper mapper,
                              ServiceUtil serviceUtil,
-                             @Qualifier("jdbcScheduler") Scheduler jdbcScheduler) {
+                             @Qualifier("jdbcScheduler") Scheduler jdbcScheduler,
+                             ReviewBulkWriter bulkWriter,
+                             ReviewCacheInvalidation cacheInvalidation) {
         this.repository = repository;
         this.mapper = mapper;
         this.serviceUtil = serviceUtil;
         this.jdbcScheduler = jdbcScheduler;
+        this.bulkWriter = bulkWriter;
+        this.cacheInvalidation = cacheInvalidation;
     }
 
     @Override
@@ -53,12 +67,33 @@ public class ReviewServiceImpl implements ReviewService {
             ReviewEntity entity = mapper.apiToEntity(body);
             ReviewEntity newEntity= repository.save(entity);
             LOG.debug("createReview: create a review entity: {}/{}",body.getProductId(),body.getReviewId());
+            cacheInvalidation.written(List.of(body.getProductId()));
             return mapper.entityToApi(newEntity);
         }catch (DataIntegrityViolationException dive){
             throw new InvalidInputException("Duplicate key, Product Id: " + body.getProductId() + ", Review Id: " + body.getReviewId());
         }
     }
 
+    @Override
+    public Mono<Long> createReviews(Flux<Review> body) {
+        // Chunks are written one after the other, the next chunk is buffered while the previous one is written
+        return body
+                .doOnNext(review -> {
+                    if (review.getProductId() < 1){
+                        throw new InvalidInputException("Invalid productId: " + review.getProductId());
+                    }
+                })
+                .buffer(bulkWriter.getChunkSize())
+                .concatMap(chunk -> Mono.fromCallable(() -> insertChunk(chunk)).subscribeOn(jdbcScheduler))
+                .reduce(0L,Long::sum)
+                .doOnNext(count -> LOG.info("Bulk inserted {} reviews",count));
+    }
+    private int insertChunk(List<Review> chunk){
+        int inserted = bulkWriter.insertChunk(chunk);
+        cacheInvalidation.written(chunk.stream().map(Review::getProductId).collect(Collectors.toSet()));
+        return inserted;
+    }
+
     @Override
     public Mono<Void> deleteReviews(int productId) {
         if (productId < 1){
@@ -69,22 +104,46 @@ public class ReviewServiceImpl implements ReviewService {
     }
     private void internalDeleteReviews(int productId){
         LOG.debug("deleteReviews: tries to delete reviews for the product with productId: {}",productId);
-        repository.deleteAll(repository.findByProductId(productId));
+        int count = repository.deleteByProductId(productId);
+        LOG.debug("deleteReviews: deleted {} reviews",count);
+        cacheInvalidation.written(List.of(productId));
     }
 
     @Override
-    public Flux<Review> getReviews(HttpHeaders headers, int productId) {
+    public Flux<Review> getReviews(HttpHeaders headers, int productId, Integer afterReviewId, int pageSize) {
         if (productId < 1){
             throw new InvalidInputException("Invalid productId: " + productId);
         }
-        LOG.info("Will get reviews for product with id={}",productId);
-        return Mono.fromCallable(() -> internalGetReviews(productId))
+        serviceUtil.validatePageSize(pageSize);
+        LOG.info("Will get reviews for product with id={}, afterReviewId={}, pageSize={}",productId,afterReviewId,pageSize);
+        return Mono.fromCallable(() -> internalGetReviews(productId,afterReviewId,pageSize))
+                .flatMapMany(Flux::fromIterable)
+                .log(LOG.getName(), Level.FINE)
+                .subscribeOn(jdbcScheduler);
+    }
+    private List<Review> internalGetReviews(int productId,Integer afterReviewId,int pageSize){
+        // Keyset paging, served by the unique (productId, reviewId) index
+        int after = (afterReviewId == null) ? Integer.MIN_VALUE : afterReviewId;
+        List<ReviewEntity> entityList =
+                repository.findByProductIdAndReviewIdGreaterThan(productId,after,PageRequest.of(0,pageSize,KEYSET_SORT));
+        List<Review> list = mapper.entityListToApiList(entityList);
+        list.forEach(e -> e.setServiceAddress(serviceUtil.getServiceAddress()));
+        LOG.debug("Response size: {}",list.size());
+        return list;
+    }
+
+    @Override
+    public Flux<Review> getReviewsByProductIds(HttpHeaders headers,List<Integer> productIds) {
+        serviceUtil.validateProductIds(productIds);
+        LOG.info("Will get reviews for {} products",productIds.size());
+        return Mono.fromCallable(() -> internalGetReviewsByProductIds(productIds))
                 .flatMapMany(Flux::fromIterable)
                 .log(LOG.getName(), Level.FINE)
                 .subscribeOn(jdbcScheduler);
     }
-    private List<Review> internalGetReviews(int productId){
-        List<ReviewEntity> entityList = repository.findByProductId(productId);
+    private List<Review> internalGetReviewsByProductIds(List<Integer> productIds){
+        List<ReviewEntity> entityList = repository.findByProductIdIn(new HashSet<>(productIds),
+                Sort.by("productId","reviewId"));
         List<Review> list = mapper.entityListToApiList(entityList);
         list.forEach(e -> e.setServiceAddress(serviceUtil.getServiceAddress()));
         LOG.debug("Response size: {}",list.size());
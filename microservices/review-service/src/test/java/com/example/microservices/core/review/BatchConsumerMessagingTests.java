@@ -0,0 +1,16 @@
+package com.example.microservices.core.review;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
+import org.springframework.context.annotation.Import;
+
+// The batchMessageProcessor binding of the batch_consumer profile
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE,
+properties = {
+        "spring.cloud.function.definition=batchMessageProcessor",
+        "spring.cloud.stream.function.bindings.batchMessageProcessor-in-0=messageProcessor-in-0",
+        "spring.cloud.stream.bindings.messageProcessor-in-0.destination=reviews",
+        "spring.cloud.stream.bindings.messageProcessor-in-0.consumer.batch-mode=true"})
+@Import({TestChannelBinderConfiguration.class})
+class BatchConsumerMessagingTests extends BatchMessagingTestBase {
+}
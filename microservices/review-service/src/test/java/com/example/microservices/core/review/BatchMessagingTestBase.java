@@ -0,0 +1,51 @@
+package com.example.microservices.core.review;
+
+import com.example.microservices.core.review.persistence.ReviewRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.api.core.review.Review;
+import org.example.api.event.MicroEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.stream.binder.test.InputDestination;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sends a batch of events through the test binder to the batch mode of the messageProcessor set by the subclass, so
+ * that the events are converted to a {@code List<MicroEvent<Integer,Review>>} like the binders deliver them.
+ */
+abstract class BatchMessagingTestBase extends MySqlTestBase {
+    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+    @Autowired
+    private InputDestination input;
+    @Autowired
+    private ReviewRepository repository;
+    @BeforeEach
+    void setupDb(){
+        repository.deleteAll();
+    }
+    @Test
+    void processesABatchOfEvents() throws JsonProcessingException {
+        List<MicroEvent<Integer,Review>> batch = List.of(
+                createReviewEvent(1,1),
+                createReviewEvent(2,1),
+                createReviewEvent(2,2),
+                new MicroEvent<>(MicroEvent.Type.DELETE,1,null),
+                createReviewEvent(3,1));
+        input.send(MessageBuilder.withPayload(mapper.writeValueAsBytes(batch)).build(),"reviews");
+        assertEquals(0,repository.findByProductId(1).size());
+        assertEquals(2,repository.findByProductId(2).size());
+        assertTrue(repository.findByProductId(2).stream().anyMatch(review -> review.getSubject().equals("Subject 2")));
+        assertEquals(1,repository.findByProductId(3).size());
+    }
+    private static MicroEvent<Integer,Review> createReviewEvent(int productId,int reviewId){
+        return new MicroEvent<>(MicroEvent.Type.CREATE,productId,
+                new Review(productId,reviewId,"Author " + reviewId,"Subject " + reviewId,"Content " + reviewId,null));
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.microservices.core.review;
+
+import com.example.microservices.core.review.persistence.ReviewCacheInvalidation;
+import com.example.microservices.core.review.persistence.ReviewRepository;
+import com.example.microservices.core.review.services.ReviewBulkWriter;
+import com.example.microservices.core.review.services.ReviewMapper;
+import com.example.microservices.core.review.services.ReviewServiceImpl;
+import org.example.api.core.review.Review;
+import org.example.api.core.review.ReviewService;
+import org.example.util.concurrent.VirtualThreads;
+import org.example.util.http.ServiceUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the requests per second of the jpa mode with the jdbcScheduler on bounded elastic threads and on virtual
+ * threads, through Hibernate, the Hikari pool and the MySQL driver. More requests are in flight than the bounded
+ * elastic scheduler has threads and the Hikari pool has connections. Excluded from the test task, run it with
+ * {@code ./gradlew :microservices:review-service:benchmark}, which runs on Java 21 and reports pinned virtual threads.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE,
+properties = {
+		"spring.cloud.stream.defaultBinder=rabbit",
+		"spring.datasource.hikari.maximum-pool-size=50",
+		"logging.level.org.hibernate.SQL=WARN",
+		"logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+		"logging.level.com.example=INFO"})
+class JdbcSchedulerBenchmark extends MySqlTestBase {
+	private static final int PRODUCTS = 200;
+	private static final int REVIEWS_PER_PRODUCT = 10;
+	private static final int REQUESTS = 20_000;
+	private static final int IN_FLIGHT = 200;
+	// Sized like the default jdbcScheduler, with a queue that holds all requests in flight
+	private static final int THREAD_POOL_SIZE = 10;
+	private static final int TASK_QUEUE_SIZE = 1000;
+	@Autowired
+	private ReviewService jpaService;
+	@Autowired
+	private ReviewRepository repository;
+	@Autowired
+	private ReviewMapper mapper;
+	@Autowired
+	private ServiceUtil serviceUtil;
+	@Autowired
+	private ReviewBulkWriter bulkWriter;
+	@Autowired
+	private ReviewCacheInvalidation cacheInvalidation;
+	@BeforeEach
+	void setupDb(){
+		repository.deleteAll();
+		Long inserted = jpaService.createReviews(Flux.range(0,PRODUCTS * REVIEWS_PER_PRODUCT)
+				.map(i -> new Review(1 + i / REVIEWS_PER_PRODUCT,i % REVIEWS_PER_PRODUCT,"Author " + i,"Subject " + i,"Content " + i,null)))
+				.block();
+		assertEquals(PRODUCTS * REVIEWS_PER_PRODUCT,inserted);
+	}
+	@Test
+	void compareBoundedElasticAndVirtualThreads(){
+		assertTrue(VirtualThreads.isSupported(),"Needs Java 21, running on " + Runtime.version());
+		Scheduler boundedElastic = VirtualThreads.newBoundedElasticOrVirtual(false,THREAD_POOL_SIZE,TASK_QUEUE_SIZE,"bench-jdbc");
+		Scheduler virtual = VirtualThreads.newBoundedElasticOrVirtual(true,THREAD_POOL_SIZE,TASK_QUEUE_SIZE,"bench-jdbc-virtual");
+		ReviewService boundedElasticService = new ReviewServiceImpl(repository,mapper,serviceUtil,boundedElastic,bulkWriter,cacheInvalidation);
+		ReviewService virtualService = new ReviewServiceImpl(repository,mapper,serviceUtil,virtual,bulkWriter,cacheInvalidation);
+		// Warms up both paths before they are measured
+		requestsPerSecond(boundedElasticService,REQUESTS / 10);
+		requestsPerSecond(virtualService,REQUESTS / 10);
+		double boundedElasticRequests = requestsPerSecond(boundedElasticService,REQUESTS);
+		double virtualRequests = requestsPerSecond(virtualService,REQUESTS);
+		System.out.printf("getReviews with %d in flight, bounded elastic (%d threads): %.0f requests/s, virtual threads: %.0f requests/s%n",
+				IN_FLIGHT,THREAD_POOL_SIZE,boundedElasticRequests,virtualRequests);
+		boundedElastic.dispose();
+		virtual.dispose();
+	}
+	private static double requestsPerSecond(ReviewService service,int requests){
+		long start = System.nanoTime();
+		Long reviews = Flux.range(0,requests)
+				.flatMap(i -> service.getReviews(null,1 + ThreadLocalRandom.current().nextInt(PRODUCTS),null,0).count(),IN_FLIGHT)
+				.reduce(0L,Long::sum)
+				.block(Duration.ofMinutes(5));
+		assertEquals((long) requests * REVIEWS_PER_PRODUCT,reviews);
+		return requests / ((System.nanoTime() - start) / 1e9);
+	}
+}
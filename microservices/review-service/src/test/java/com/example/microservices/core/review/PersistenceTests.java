@@ -9,6 +9,8 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -54,12 +56,48 @@ public class PersistenceTests extends MySqlTestBase{
         assertFalse(repository.existsById(savedEntity.getId()));
     }
     @Test
+    void deleteByProductId(){
+        repository.save(new ReviewEntity(1,3,"a","s","c"));
+        repository.save(new ReviewEntity(2,1,"a","s","c"));
+        assertEquals(2,repository.deleteByProductId(1));
+        assertThat(repository.findByProductId(1),hasSize(0));
+        assertThat(repository.findByProductId(2),hasSize(1));
+        assertEquals(0,repository.deleteByProductId(1));
+    }
+    @Test
     void getByProductId(){
         List<ReviewEntity> entityList= repository.findByProductId(savedEntity.getProductId());
         assertThat(entityList,hasSize(1));
         assertEqualsReview(savedEntity,entityList.get(0));
     }
     @Test
+    void getByProductIds(){
+        repository.save(new ReviewEntity(1,1,"a","s","c"));
+        repository.save(new ReviewEntity(2,1,"a","s","c"));
+        repository.save(new ReviewEntity(3,1,"a","s","c"));
+        List<ReviewEntity> entityList = repository.findByProductIdIn(List.of(2,1),Sort.by("productId","reviewId"));
+        assertThat(entityList,hasSize(3));
+        assertEquals(1,entityList.get(0).getProductId());
+        assertEquals(1,entityList.get(0).getReviewId());
+        assertEquals(1,entityList.get(1).getProductId());
+        assertEquals(2,entityList.get(1).getReviewId());
+        assertEquals(2,entityList.get(2).getProductId());
+    }
+    @Test
+    void getByProductIdKeyset(){
+        repository.save(new ReviewEntity(1,1,"a","s","c"));
+        repository.save(new ReviewEntity(1,3,"a","s","c"));
+        List<ReviewEntity> firstPage = repository.findByProductIdAndReviewIdGreaterThan(1,Integer.MIN_VALUE,
+                PageRequest.of(0,2,Sort.by("reviewId")));
+        assertThat(firstPage,hasSize(2));
+        assertEquals(1,firstPage.get(0).getReviewId());
+        assertEquals(2,firstPage.get(1).getReviewId());
+        List<ReviewEntity> nextPage = repository.findByProductIdAndReviewIdGreaterThan(1,firstPage.get(1).getReviewId(),
+                PageRequest.of(0,2,Sort.by("reviewId")));
+        assertThat(nextPage,hasSize(1));
+        assertEquals(3,nextPage.get(0).getReviewId());
+    }
+    @Test
     void duplicateError(){
         assertThrows(DataIntegrityViolationException.class,() -> {
             ReviewEntity entity = new ReviewEntity(1,2,"a","s","c");
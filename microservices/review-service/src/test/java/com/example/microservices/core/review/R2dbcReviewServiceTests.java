@@ -0,0 +1,96 @@
+package com.example.microservices.core.review;
+
+import com.example.microservices.core.review.persistence.ReviewEntity;
+import com.example.microservices.core.review.persistence.ReviewRepository;
+import com.example.microservices.core.review.services.R2dbcReviewServiceImpl;
+import org.example.api.core.review.Review;
+import org.example.api.core.review.ReviewService;
+import org.example.api.exceptions.InvalidInputException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+properties = {"spring.cloud.stream.defaultBinder=rabbit","app.persistence=r2dbc","logging.level.com.example=DEBUG"})
+class R2dbcReviewServiceTests extends MySqlTestBase {
+	@Autowired
+	private WebTestClient client;
+	@Autowired
+	private ReviewService reviewService;
+	@Autowired
+	private ReviewRepository repository;
+	@BeforeEach
+	void setupDb(){
+		repository.deleteAll();
+	}
+	@Test
+	void usesR2dbc(){
+		assertInstanceOf(R2dbcReviewServiceImpl.class,reviewService);
+	}
+	@Test
+	void createAndGetReviews(){
+		int productId = 1;
+		for (int reviewId = 1; reviewId <= 3; reviewId++){
+			reviewService.createReview(review(productId,reviewId)).block();
+		}
+		// Rows inserted through R2DBC are visible to JPA and get ids from the same sequence
+		assertEquals(3,repository.findByProductId(productId).size());
+		client.get()
+				.uri("/review?productId=" + productId + "&pageSize=2&afterReviewId=1")
+				.accept(MediaType.APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(HttpStatus.OK)
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(2)
+				.jsonPath("$[0].reviewId").isEqualTo(2)
+				.jsonPath("$[1].reviewId").isEqualTo(3);
+	}
+	@Test
+	void sharesIdsWithJpa(){
+		repository.save(new ReviewEntity(1,1,"a","s","c"));
+		reviewService.createReview(review(1,2)).block();
+		repository.save(new ReviewEntity(1,3,"a","s","c"));
+		Set<Integer> ids = new HashSet<>();
+		repository.findByProductId(1).forEach(entity -> assertTrue(ids.add(entity.getId()),"Duplicate id " + entity.getId()));
+		assertEquals(3,ids.size());
+	}
+	@Test
+	void duplicateError(){
+		reviewService.createReview(review(1,1)).block();
+		InvalidInputException thrown = assertThrows(InvalidInputException.class,
+				() -> reviewService.createReview(review(1,1)).block());
+		assertEquals("Duplicate key, Product Id: 1, Review Id: 1",thrown.getMessage());
+		assertEquals(1,repository.count());
+	}
+	@Test
+	void createReviewsInBulk(){
+		reviewService.createReview(review(1,1)).block();
+		// The duplicate of the first review is skipped
+		Long inserted = reviewService.createReviews(Flux.fromIterable(List.of(review(1,1),review(1,2),review(2,1)))).block();
+		assertEquals(2L,inserted);
+		assertEquals(2,repository.findByProductId(1).size());
+		assertEquals(1,repository.findByProductId(2).size());
+	}
+	@Test
+	void deleteReviews(){
+		reviewService.createReview(review(1,1)).block();
+		reviewService.createReview(review(1,2)).block();
+		reviewService.deleteReviews(1).block();
+		assertEquals(0,repository.findByProductId(1).size());
+		reviewService.deleteReviews(1).block();
+	}
+	private static Review review(int productId,int reviewId){
+		return new Review(productId,reviewId,"Author " + reviewId,"Subject " + reviewId,"Content " + reviewId,null);
+	}
+}
@@ -0,0 +1,72 @@
+package com.example.microservices.core.review;
+
+import com.example.microservices.core.review.persistence.ReviewRepository;
+import com.example.microservices.core.review.services.ReviewBulkWriter;
+import com.example.microservices.core.review.services.ReviewMapper;
+import org.example.api.core.review.Review;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the rows per second of one save per review with the chunked bulk ingest path.
+ * Excluded from the test task, run it with {@code ./gradlew :microservices:review-service:benchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE,
+properties = {
+		"spring.cloud.stream.defaultBinder=rabbit",
+		"spring.jpa.properties.hibernate.jdbc.batch_size=500",
+		"spring.jpa.properties.hibernate.order_inserts=true",
+		"spring.datasource.hikari.data-source-properties.rewriteBatchedStatements=true",
+		"app.bulkInsert.chunkSize=500",
+		"logging.level.org.hibernate.SQL=WARN",
+		"logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+		"logging.level.com.example=INFO"})
+class ReviewBulkInsertBenchmark extends MySqlTestBase {
+	private static final int ROWS = 20_000;
+	@Autowired
+	private ReviewRepository repository;
+	@Autowired
+	private ReviewMapper mapper;
+	@Autowired
+	private ReviewBulkWriter bulkWriter;
+	@BeforeEach
+	void setupDb(){
+		repository.deleteAll();
+	}
+	@Test
+	void compareSingleAndBulkInserts(){
+		List<Review> reviews = reviews(1);
+		long start = System.nanoTime();
+		reviews.forEach(review -> repository.save(mapper.apiToEntity(review)));
+		double singleRowsPerSecond = ROWS / ((System.nanoTime() - start) / 1e9);
+
+		reviews = reviews(2);
+		start = System.nanoTime();
+		int inserted = 0;
+		for (int i = 0; i < reviews.size(); i += bulkWriter.getChunkSize()){
+			inserted += bulkWriter.insertChunk(reviews.subList(i,Math.min(i + bulkWriter.getChunkSize(),reviews.size())));
+		}
+		double bulkRowsPerSecond = ROWS / ((System.nanoTime() - start) / 1e9);
+
+		assertEquals(ROWS,inserted);
+		assertEquals(2L * ROWS,repository.count());
+		System.out.printf("single: %.0f rows/s, bulk (chunkSize %d): %.0f rows/s%n",
+				singleRowsPerSecond,bulkWriter.getChunkSize(),bulkRowsPerSecond);
+	}
+	private static List<Review> reviews(int run){
+		List<Review> reviews = new ArrayList<>(ROWS);
+		for (int i = 0; i < ROWS; i++){
+			reviews.add(new Review(run * 1_000_000 + i / 100,i % 100,"Author " + i,"Subject " + i,"Content " + i,null));
+		}
+		return reviews;
+	}
+}
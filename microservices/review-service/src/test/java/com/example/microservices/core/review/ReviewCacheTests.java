@@ -0,0 +1,93 @@
+package com.example.microservices.core.review;
+
+import com.example.microservices.core.review.persistence.ReviewCacheInvalidation;
+import com.example.microservices.core.review.persistence.ReviewCacheMetricsConfig;
+import com.example.microservices.core.review.persistence.ReviewEntity;
+import com.example.microservices.core.review.persistence.ReviewRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest(properties = {"spring.jpa.hibernate.ddl-auto=update",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=true",
+        "spring.jpa.properties.hibernate.cache.region.factory_class=jcache",
+        "spring.jpa.properties.hibernate.javax.cache.provider=com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class ReviewCacheTests extends MySqlTestBase{
+    @Autowired
+    private ReviewRepository repository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    private SimpleMeterRegistry meterRegistry;
+    private Statistics statistics;
+    @BeforeEach
+    void setupDb(){
+        repository.deleteAll();
+        meterRegistry = new SimpleMeterRegistry();
+        new ReviewCacheMetricsConfig(entityManagerFactory,meterRegistry);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        repository.save(new ReviewEntity(1,1,"a","s","c"));
+        repository.save(new ReviewEntity(1,2,"a","s","c"));
+    }
+    @Test
+    void cachesQueryByProductId(){
+        assertThat(repository.findByProductId(1),hasSize(2));
+        assertThat(repository.findByProductId(1),hasSize(2));
+        assertEquals(1,statistics.getQueryCacheHitCount());
+        assertEquals(1,requests(ReviewRepository.QUERY_CACHE_REGION,"hit"));
+        assertEquals(0.5,meterRegistry.get("hibernate.cache.hit.ratio")
+                .tag("region",ReviewRepository.QUERY_CACHE_REGION).gauge().value());
+    }
+    @Test
+    void createInvalidatesCachedQuery(){
+        assertThat(repository.findByProductId(1),hasSize(2));
+        repository.save(new ReviewEntity(1,3,"a","s","c"));
+        assertThat(repository.findByProductId(1),hasSize(3));
+    }
+    @Test
+    void deleteInvalidatesCachedQueryAndEntities(){
+        List<ReviewEntity> entityList = repository.findByProductId(1);
+        assertThat(entityList,hasSize(2));
+        assertTrue(entityManagerFactory.getCache().contains(ReviewEntity.class,entityList.get(0).getId()));
+        assertEquals(2,repository.deleteByProductId(1));
+        assertThat(repository.findByProductId(1),hasSize(0));
+        assertFalse(entityManagerFactory.getCache().contains(ReviewEntity.class,entityList.get(0).getId()));
+    }
+    @Test
+    void evictorEvictsCachedQueries(){
+        StreamBridge streamBridge = mock(StreamBridge.class);
+        ReviewCacheInvalidation cacheInvalidation = new ReviewCacheInvalidation(streamBridge,entityManagerFactory,true);
+        cacheInvalidation.written(List.of(1));
+        verify(streamBridge).send(eq("reviewCacheInvalidations-out-0"),eq(List.of(1)));
+        assertThat(repository.findByProductId(1),hasSize(2));
+        cacheInvalidation.reviewCacheEvictor().accept(List.of(1));
+        assertThat(repository.findByProductId(1),hasSize(2));
+        assertEquals(0,statistics.getQueryCacheHitCount());
+        assertEquals(2,statistics.getQueryCachePutCount());
+    }
+    private double requests(String region,String result){
+        return meterRegistry.get("hibernate.cache.requests").tag("region",region).tag("result",result)
+                .functionCounter().count();
+    }
+}
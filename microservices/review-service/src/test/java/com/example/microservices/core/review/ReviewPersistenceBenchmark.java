@@ -0,0 +1,91 @@
+package com.example.microservices.core.review;
+
+import com.example.microservices.core.review.persistence.ReactiveReviewRepository;
+import com.example.microservices.core.review.persistence.ReviewIdAllocator;
+import com.example.microservices.core.review.persistence.ReviewRepository;
+import com.example.microservices.core.review.services.R2dbcReviewServiceImpl;
+import com.example.microservices.core.review.services.ReviewMapper;
+import org.example.api.core.review.Review;
+import org.example.api.core.review.ReviewService;
+import org.example.util.http.ServiceUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.ReactiveTransactionManager;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the requests per second of the jpa and the r2dbc persistence mode, with many requests in flight at a time.
+ * Excluded from the test task, run it with {@code ./gradlew :microservices:review-service:benchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE,
+properties = {
+		"spring.cloud.stream.defaultBinder=rabbit",
+		"app.threadPoolSize=10",
+		"app.taskQueueSize=100",
+		"spring.r2dbc.pool.initial-size=10",
+		"spring.r2dbc.pool.max-size=50",
+		"logging.level.org.hibernate.SQL=WARN",
+		"logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+		"logging.level.com.example=INFO"})
+class ReviewPersistenceBenchmark extends MySqlTestBase {
+	private static final int PRODUCTS = 200;
+	private static final int REVIEWS_PER_PRODUCT = 10;
+	private static final int REQUESTS = 20_000;
+	// Kept below the taskQueueSize of the jdbcScheduler, more in flight are rejected in the jpa mode
+	private static final int IN_FLIGHT = 100;
+	@Autowired
+	private ReviewService jpaService;
+	@Autowired
+	private ReviewRepository repository;
+	@Autowired
+	private ReactiveReviewRepository reactiveRepository;
+	@Autowired
+	private ReviewIdAllocator idAllocator;
+	@Autowired
+	private DatabaseClient databaseClient;
+	@Autowired
+	private ReactiveTransactionManager transactionManager;
+	@Autowired
+	private ReviewMapper mapper;
+	@Autowired
+	private ServiceUtil serviceUtil;
+	private ReviewService r2dbcService;
+	@BeforeEach
+	void setupDb(){
+		repository.deleteAll();
+		r2dbcService = new R2dbcReviewServiceImpl(reactiveRepository,idAllocator,databaseClient,transactionManager,
+				mapper,serviceUtil,500);
+		Long inserted = r2dbcService.createReviews(Flux.range(0,PRODUCTS * REVIEWS_PER_PRODUCT)
+				.map(i -> new Review(1 + i / REVIEWS_PER_PRODUCT,i % REVIEWS_PER_PRODUCT,"Author " + i,"Subject " + i,"Content " + i,null)))
+				.block();
+		assertEquals(PRODUCTS * REVIEWS_PER_PRODUCT,inserted);
+	}
+	@Test
+	void compareJpaAndR2dbcReads(){
+		// Warms up both paths before they are measured
+		requestsPerSecond(jpaService,REQUESTS / 10);
+		requestsPerSecond(r2dbcService,REQUESTS / 10);
+		double jpa = requestsPerSecond(jpaService,REQUESTS);
+		double r2dbc = requestsPerSecond(r2dbcService,REQUESTS);
+		System.out.printf("getReviews with %d in flight, jpa: %.0f requests/s, r2dbc: %.0f requests/s%n",IN_FLIGHT,jpa,r2dbc);
+	}
+	private static double requestsPerSecond(ReviewService service,int requests){
+		long start = System.nanoTime();
+		Long reviews = Flux.range(0,requests)
+				.flatMap(i -> service.getReviews(null,1 + ThreadLocalRandom.current().nextInt(PRODUCTS),null,0).count(),IN_FLIGHT)
+				.reduce(0L,Long::sum)
+				.block(Duration.ofMinutes(5));
+		assertEquals((long) requests * REVIEWS_PER_PRODUCT,reviews);
+		return requests / ((System.nanoTime() - start) / 1e9);
+	}
+}
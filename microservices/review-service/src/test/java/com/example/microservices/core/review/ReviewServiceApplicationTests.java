@@ -9,15 +9,27 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
 properties = {"spring.cloud.stream.defaultBinder=rabbit","logging.level.com.example=DEBUG"})
@@ -29,6 +41,11 @@ class ReviewServiceApplicationTests extends MySqlTestBase{
 	@Autowired
 	@Qualifier("messageProcessor")
 	private Consumer<MicroEvent<Integer,Review>> messageProcessor;
+	@Autowired
+	@Qualifier("reactiveMessageProcessor")
+	private Function<Flux<MicroEvent<Integer,Review>>,Mono<Void>> reactiveMessageProcessor;
+	@MockBean
+	private StreamBridge streamBridge;
 	@BeforeEach
 	void setupDb(){
 		repository.deleteAll();
@@ -47,6 +64,26 @@ class ReviewServiceApplicationTests extends MySqlTestBase{
 				.jsonPath("$[2].reviewId").isEqualTo(3);
 	}
 	@Test
+	void getReviewsByProductIdPaged(){
+		int productId = 1;
+		sendCreateReviewEvent(productId,1);
+		sendCreateReviewEvent(productId,2);
+		sendCreateReviewEvent(productId,3);
+		getAndVerifyReviewsByProductId("?productId=" + productId + "&pageSize=2",HttpStatus.OK)
+				.jsonPath("$.length()").isEqualTo(2)
+				.jsonPath("$[1].reviewId").isEqualTo(2);
+		getAndVerifyReviewsByProductId("?productId=" + productId + "&pageSize=2&afterReviewId=2",HttpStatus.OK)
+				.jsonPath("$.length()").isEqualTo(1)
+				.jsonPath("$[0].reviewId").isEqualTo(3);
+	}
+	@Test
+	void getReviewsInvalidPageSize(){
+		getAndVerifyReviewsByProductId("?productId=1&pageSize=1001",HttpStatus.UNPROCESSABLE_ENTITY)
+				.jsonPath("$.message").isEqualTo("Invalid pageSize: 1001, must be between 1 and 1000");
+		getAndVerifyReviewsByProductId("?productId=1&pageSize=0",HttpStatus.UNPROCESSABLE_ENTITY)
+				.jsonPath("$.message").isEqualTo("Invalid pageSize: 0, must be between 1 and 1000");
+	}
+	@Test
 	void duplicateError(){
 		int productId = 1;
 		int reviewId = 1;
@@ -62,6 +99,42 @@ class ReviewServiceApplicationTests extends MySqlTestBase{
 		assertEquals(1,repository.count());
 	}
 	@Test
+	void createReviewsInBulk(){
+		sendCreateReviewEvent(1,1);
+		String body = "{\"productId\":1,\"reviewId\":1,\"author\":\"a\",\"subject\":\"s\",\"content\":\"c\"}\n"
+				+ "{\"productId\":1,\"reviewId\":2,\"author\":\"a\",\"subject\":\"s\",\"content\":\"c\"}\n"
+				+ "{\"productId\":2,\"reviewId\":1,\"author\":\"a\",\"subject\":\"s\",\"content\":\"c\"}\n";
+		// The duplicate of the first review is skipped
+		client.post()
+				.uri("/review/bulk")
+				.contentType(MediaType.APPLICATION_NDJSON)
+				.bodyValue(body)
+				.accept(MediaType.APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody(Long.class).isEqualTo(2L);
+		assertEquals(2,repository.findByProductId(1).size());
+		assertEquals(1,repository.findByProductId(2).size());
+	}
+	@Test
+	void processEventsReactively(){
+		when(streamBridge.send(any(),any())).thenReturn(true);
+		// Creates and deletes of one product must stay in order, the duplicate review ends up in the DLQ
+		Flux<MicroEvent<Integer,Review>> events = Flux.range(1,3)
+				.concatMap(productId -> Flux.just(
+						createReviewEvent(productId,1),
+						createReviewEvent(productId,2),
+						new MicroEvent<>(MicroEvent.Type.DELETE,productId,null),
+						createReviewEvent(productId,3)))
+				.concatWith(Flux.just(createReviewEvent(1,3)));
+		reactiveMessageProcessor.apply(events).block(Duration.ofSeconds(10));
+		assertEquals(3,repository.count());
+		for (int productId = 1; productId <= 3; productId++){
+			assertEquals(3,repository.findByProductId(productId).get(0).getReviewId());
+		}
+		verify(streamBridge,times(1)).send(eq("reviewsDlq-out-0"),any());
+	}
+	@Test
 	void deleteReviews(){
 		int productId = 1;
 		int reviewId = 1;
@@ -72,6 +145,30 @@ class ReviewServiceApplicationTests extends MySqlTestBase{
 		sendDeleteReviewEvent(productId);
 	}
 	@Test
+	void getReviewsByProductIds(){
+		sendCreateReviewEvent(1,1);
+		sendCreateReviewEvent(2,1);
+		sendCreateReviewEvent(2,2);
+		sendCreateReviewEvent(3,1);
+		getAndVerifyReviewsByProductId("?productIds=2,1",HttpStatus.OK)
+				.jsonPath("$.length()").isEqualTo(3)
+				.jsonPath("$[0].productId").isEqualTo(1)
+				.jsonPath("$[1].productId").isEqualTo(2)
+				.jsonPath("$[2].productId").isEqualTo(2)
+				.jsonPath("$[2].reviewId").isEqualTo(2);
+	}
+	@Test
+	void getReviewsTooManyProductIds(){
+		String productIds = IntStream.rangeClosed(1,101).mapToObj(String::valueOf).collect(Collectors.joining(","));
+		getAndVerifyReviewsByProductId("?productIds=" + productIds,HttpStatus.UNPROCESSABLE_ENTITY)
+				.jsonPath("$.message").isEqualTo("Too many productIds: 101, max is 100");
+	}
+	@Test
+	void getReviewsInvalidProductIds(){
+		getAndVerifyReviewsByProductId("?productIds=1,0",HttpStatus.UNPROCESSABLE_ENTITY)
+				.jsonPath("$.message").isEqualTo("Invalid productId: 0");
+	}
+	@Test
 	void getReviewsMissingParameter(){
 		getAndVerifyReviewsByProductId("",HttpStatus.BAD_REQUEST)
 				.jsonPath("$.path").isEqualTo("/review")
@@ -127,10 +224,12 @@ class ReviewServiceApplicationTests extends MySqlTestBase{
 				.expectBody();
 	}
 	private void sendCreateReviewEvent(int productId,int reviewId){
+		messageProcessor.accept(createReviewEvent(productId,reviewId));
+	}
+	private MicroEvent<Integer,Review> createReviewEvent(int productId,int reviewId){
 		Review review = new Review(productId,reviewId,"Author " + reviewId,"Subject " + reviewId,
 				"Content " + reviewId,"SA");
-		MicroEvent<Integer,Review> event = new MicroEvent<>(MicroEvent.Type.CREATE,productId,review);
-		messageProcessor.accept(event);
+		return new MicroEvent<>(MicroEvent.Type.CREATE,productId,review);
 	}
 	private void sendDeleteReviewEvent(int productId){
 		MicroEvent<Integer,Review> event = new MicroEvent<>(MicroEvent.Type.DELETE,productId,null);
@@ -184,10 +184,12 @@ function testCircuitBreaker(){
   assertEqual "OPEN" "$($EXEC curl -s http://localhost:${MGM_PORT}/actuator/health | jq -r .components.circuitBreakers.details.product.details.state)"
 
   assertCurl 200 "curl -k https://$HOST:$PORT/product-composite/$PROD_ID_REVS_RECS?delay=3 $AUTH -s"
-  assertEqual "Fallback product$PROD_ID_REVS_RECS" "$(echo "$RESPONSE" | jq -r .name)"
+  assertEqual "product 1" "$(echo "$RESPONSE" | jq -r .name)"
+  assertEqual "true" "$(echo "$RESPONSE" | jq -r .stale)"
 
-  assertCurl 200 "curl -k https://$HOST:$PORT/product-composite/$PROD_ID_REVS_RECS $AUTH -s"
-  assertEqual "Fallback product$PROD_ID_REVS_RECS" "$(echo "$RESPONSE" | jq -r .name)"
+  assertCurl 200 "curl -k https://$HOST:$PORT/product-composite/$PROD_ID_REVS_RECS $AUTH $NO_CACHE -s"
+  assertEqual "product 1" "$(echo "$RESPONSE" | jq -r .name)"
+  assertEqual "true" "$(echo "$RESPONSE" | jq -r .stale)"
 
   assertCurl 404 "curl -k https://$HOST:$PORT/product-composite/$PROD_ID_NOT_FOUND $AUTH -s"
   assertEqual "Product Id: $PROD_ID_NOT_FOUND not found in fallback cache!" "$(echo $RESPONSE | jq -r .message)"
@@ -199,7 +201,7 @@ function testCircuitBreaker(){
 
   for ((n=0; n<3; n++))
   do
-    assertCurl 200 "curl -k https://$HOST:$PORT/product-composite/$PROD_ID_REVS_RECS $AUTH -s"
+    assertCurl 200 "curl -k https://$HOST:$PORT/product-composite/$PROD_ID_REVS_RECS $AUTH $NO_CACHE -s"
     assertEqual "product 1" "$(echo "$RESPONSE" | jq -r .name)"
   done
 
@@ -235,6 +237,7 @@ waitForService curl -k $HEALTH_URL/actuator/health
 ACCESS_TOKEN=$(curl -k https://writer:secret-writer@$HOST:$PORT/oauth2/token -d grant_type=client_credentials -d scope="product:read product:write" -s | jq .access_token -r)
 echo ACCESS_TOKEN=$ACCESS_TOKEN
 AUTH="-H \"Authorization: Bearer $ACCESS_TOKEN\""
+NO_CACHE="-H \"Cache-Control: no-cache\""
 
 setupTestdata
 
@@ -258,6 +261,18 @@ assertEqual $PROD_ID_NO_REVS $(echo $RESPONSE | jq .productId)
 assertEqual 3 $(echo $RESPONSE | jq ".recommendations | length")
 assertEqual 0 $(echo $RESPONSE | jq ".reviews | length")
 
+assertCurl 200 "curl $AUTH -k https://$HOST:$PORT/product-composite?productIds=$PROD_ID_REVS_RECS,$PROD_ID_NOT_FOUND,$PROD_ID_NO_RECS -s"
+assertEqual 2 $(echo $RESPONSE | jq "length")
+assertEqual $PROD_ID_REVS_RECS $(echo $RESPONSE | jq .[0].productId)
+assertEqual 3 $(echo $RESPONSE | jq ".[0].reviews | length")
+assertEqual $PROD_ID_NO_RECS $(echo $RESPONSE | jq .[1].productId)
+assertEqual 0 $(echo $RESPONSE | jq ".[1].recommendations | length")
+
+assertCurl 200 "curl $AUTH -k https://$HOST:$PORT/product-composite/$PROD_ID_REVS_RECS/stream -H \"Accept: application/x-ndjson\" -s"
+assertEqual 7 $(echo $RESPONSE | jq -s "length")
+assertEqual "\"PRODUCT\"" "$(echo $RESPONSE | jq -s .[0].type)"
+assertEqual 3 $(echo $RESPONSE | jq -s "map(select(.type == \"REVIEW\")) | length")
+
 assertCurl 422 "curl $AUTH -k https://$HOST:$PORT/product-composite/-1 -s"
 assertEqual "\"Invalid productId: -1\"" "$(echo $RESPONSE | jq .message)"
 
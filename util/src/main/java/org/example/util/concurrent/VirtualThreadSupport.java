@@ -0,0 +1,11 @@
+package org.example.util.concurrent;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The Java 21 API used by {@link VirtualThreads}, implemented in src/main/java21.
+ */
+interface VirtualThreadSupport {
+    ExecutorService newExecutor(String namePrefix);
+    boolean isVirtual(Thread thread);
+}
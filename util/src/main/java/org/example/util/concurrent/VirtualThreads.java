@@ -0,0 +1,59 @@
+package org.example.util.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Creates executors and schedulers that run every task on a new virtual thread. The services are built for Java 17,
+ * the virtual thread support is compiled for Java 21 from src/main/java21 and only loaded on a Java 21 runtime.
+ */
+public final class VirtualThreads {
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualThreads.class);
+    private static final VirtualThreadSupport SUPPORT = loadSupport();
+    private VirtualThreads(){
+    }
+    public static boolean isSupported(){
+        return SUPPORT != null;
+    }
+    public static ExecutorService newExecutor(String namePrefix){
+        if (SUPPORT == null){
+            throw new UnsupportedOperationException("Virtual threads need Java 21, running on " + Runtime.version());
+        }
+        return SUPPORT.newExecutor(namePrefix);
+    }
+    public static boolean isVirtual(Thread thread){
+        return SUPPORT != null && SUPPORT.isVirtual(thread);
+    }
+    /**
+     * Returns a scheduler on virtual threads if enabled and supported, otherwise a bounded elastic scheduler. On
+     * virtual threads blocking calls are no longer limited by a thread cap and task queue, but by the pools of the
+     * resources they block on, like the JDBC connection pool.
+     */
+    public static Scheduler newBoundedElasticOrVirtual(boolean virtualThreads,int threadCap,int queuedTaskCap,String name){
+        if (virtualThreads){
+            if (SUPPORT != null){
+                LOG.info("Creates scheduler {} on virtual threads",name);
+                return Schedulers.fromExecutorService(newExecutor(name + "-"),name);
+            }
+            LOG.warn("Virtual threads need Java 21, running on {}, scheduler {} falls back to bounded elastic threads",
+                    Runtime.version(),name);
+        }
+        return Schedulers.newBoundedElastic(threadCap,queuedTaskCap,name);
+    }
+    private static VirtualThreadSupport loadSupport(){
+        if (Runtime.version().feature() < 21){
+            return null;
+        }
+        try{
+            return (VirtualThreadSupport) Class.forName("org.example.util.concurrent.Java21VirtualThreadSupport")
+                    .getDeclaredConstructor().newInstance();
+        }catch (ReflectiveOperationException | LinkageError ex){
+            LOG.warn("Running on {}, but the Java 21 virtual thread support is missing: {}",Runtime.version(),ex.toString());
+            return null;
+        }
+    }
+}
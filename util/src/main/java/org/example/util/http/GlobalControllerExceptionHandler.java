@@ -3,6 +3,7 @@ package org.example.util.http;
 import org.example.api.exceptions.BadRequestException;
 import org.example.api.exceptions.InvalidInputException;
 import org.example.api.exceptions.NotFoundException;
+import org.example.api.exceptions.ServiceUnavailableException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -43,6 +44,13 @@ public class GlobalControllerExceptionHandler {
     ){
         return createHttpErrorInfo(HttpStatus.UNPROCESSABLE_ENTITY,request,ex);
     }
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public @ResponseBody HttpErrorInfo handleServiceUnavailableException(
+            ServerHttpRequest request,ServiceUnavailableException ex
+    ){
+        return createHttpErrorInfo(HttpStatus.SERVICE_UNAVAILABLE,request,ex);
+    }
     private HttpErrorInfo createHttpErrorInfo(HttpStatus httpStatus,
                                               ServerHttpRequest request,
                                               Exception ex){
@@ -1,5 +1,6 @@
 package org.example.util.http;
 
+import org.example.api.exceptions.InvalidInputException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,10 +9,15 @@ import org.springframework.stereotype.Component;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Collection;
 
 @Component
 public class ServiceUtil {
     private static final Logger LOG = LoggerFactory.getLogger(ServiceUtil.class);
+    // Upper bound of the productIds of one batch read, keeps the IN / $in queries and the responses bounded
+    public static final int MAX_PRODUCT_IDS = 100;
+    // Upper bound of a page of the keyset paged reads, the APIs default to 100
+    public static final int MAX_PAGE_SIZE = 1000;
     private final String port;
     private String serviceAddress = null;
     @Autowired
@@ -24,6 +30,28 @@ public class ServiceUtil {
         }
         return serviceAddress;
     }
+    /**
+     * Validates the productIds of a batch read, throws InvalidInputException if there are too many or one is invalid.
+     */
+    public void validateProductIds(Collection<Integer> productIds){
+        if (productIds.size() > MAX_PRODUCT_IDS){
+            throw new InvalidInputException("Too many productIds: " + productIds.size() + ", max is " + MAX_PRODUCT_IDS);
+        }
+        for (int productId : productIds){
+            if (productId < 1){
+                throw new InvalidInputException("Invalid productId: " + productId);
+            }
+        }
+    }
+    /**
+     * Validates the page size of a keyset paged read, throws InvalidInputException if it is not between 1 and
+     * MAX_PAGE_SIZE.
+     */
+    public void validatePageSize(int pageSize){
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE){
+            throw new InvalidInputException("Invalid pageSize: " + pageSize + ", must be between 1 and " + MAX_PAGE_SIZE);
+        }
+    }
     private String findMyHostname(){
         try{
             return InetAddress.getLocalHost().getHostName();
@@ -0,0 +1,122 @@
+package org.example.util.messaging;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Remembers the ids of the last maxSize processed events so that consumers can skip redelivered events before they
+ * touch the database. Optionally the ids are appended to a journal file and read back at startup, the journal is
+ * compacted when it grows to twice the size of the window.
+ */
+public class EventDeduplicator {
+    private static final Logger LOG = LoggerFactory.getLogger(EventDeduplicator.class);
+    private final int maxSize;
+    private final Path file;
+    private final Map<String,Boolean> window;
+    private final Counter hits;
+    private final Counter misses;
+    private BufferedWriter journal;
+    private int journalSize;
+    public EventDeduplicator(int maxSize,String file,MeterRegistry meterRegistry){
+        this.maxSize = maxSize;
+        this.file = (file == null || file.isBlank()) ? null : Path.of(file);
+        this.window = new LinkedHashMap<>(16,0.75f,false){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,Boolean> eldest){
+                return size() > EventDeduplicator.this.maxSize;
+            }
+        };
+        this.hits = Counter.builder("events.dedup")
+                .description("Number of events checked for duplicates")
+                .tag("result","hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("events.dedup")
+                .description("Number of events checked for duplicates")
+                .tag("result","miss")
+                .register(meterRegistry);
+        Gauge.builder("events.dedup.window.size",this,EventDeduplicator::size)
+                .description("Number of event ids in the dedup window")
+                .register(meterRegistry);
+        if (this.file != null){
+            recover();
+        }
+        LOG.info("Creates an event deduplicator with maxSize = {}, file = '{}'",maxSize,file);
+    }
+    /**
+     * Returns true if an event with the id was already processed, events without an id are never duplicates.
+     */
+    public synchronized boolean isDuplicate(String eventId){
+        if (eventId == null){
+            return false;
+        }
+        boolean duplicate = window.containsKey(eventId);
+        (duplicate ? hits : misses).increment();
+        return duplicate;
+    }
+    /**
+     * Call once the event is processed, an event that failed must not be marked so that it can be redelivered.
+     */
+    public synchronized void markProcessed(String eventId){
+        if (eventId == null || window.put(eventId,Boolean.TRUE) != null || journal == null){
+            return;
+        }
+        try{
+            journal.write(eventId);
+            journal.newLine();
+            journal.flush();
+            if (++journalSize > 2 * maxSize){
+                compact();
+            }
+        }catch (IOException ex){
+            LOG.warn("Failed to write event id to the dedup journal {}: {}",file,ex.toString());
+        }
+    }
+    public synchronized int size(){
+        return window.size();
+    }
+    public synchronized void close() throws IOException {
+        if (journal != null){
+            journal.close();
+            journal = null;
+        }
+    }
+    private void recover(){
+        try{
+            if (file.getParent() != null){
+                Files.createDirectories(file.getParent());
+            }
+            if (Files.exists(file)){
+                List<String> ids = Files.readAllLines(file,StandardCharsets.UTF_8);
+                ids.stream().filter(id -> !id.isBlank()).forEach(id -> window.put(id,Boolean.TRUE));
+                LOG.info("Recovered {} event ids from the dedup journal {}",window.size(),file);
+            }
+            compact();
+        }catch (IOException ex){
+            throw new UncheckedIOException("Failed to recover the dedup journal " + file,ex);
+        }
+    }
+    private void compact() throws IOException {
+        close();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp,window.keySet(),StandardCharsets.UTF_8,CREATE,WRITE,TRUNCATE_EXISTING);
+        Files.move(tmp,file,StandardCopyOption.ATOMIC_MOVE,StandardCopyOption.REPLACE_EXISTING);
+        journal = Files.newBufferedWriter(file,StandardCharsets.UTF_8,CREATE,WRITE,APPEND);
+        journalSize = window.size();
+    }
+}
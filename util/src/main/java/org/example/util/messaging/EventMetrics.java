@@ -0,0 +1,68 @@
+package org.example.util.messaging;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.example.api.event.MicroEvent;
+import reactor.core.publisher.Mono;
+
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Timers of the message consumers: the end-to-end latency from the creation of an event until a consumer receives it,
+ * and the time it takes to process it, both per event type.
+ */
+public class EventMetrics {
+    private final MeterRegistry meterRegistry;
+    public EventMetrics(MeterRegistry meterRegistry){
+        this.meterRegistry = meterRegistry;
+    }
+    public void recordLatency(MicroEvent<?,?> event){
+        ZonedDateTime createdAt = event.getEventCreatedAt();
+        if (createdAt == null){
+            return;
+        }
+        // Clocks of producer and consumer may drift a little apart, a negative latency is recorded as zero
+        long latencyMs = meterRegistry.config().clock().wallTime() - createdAt.toInstant().toEpochMilli();
+        Timer.builder("events.consumer.latency")
+                .description("Time from the creation of an event until it is received by the consumer")
+                .tag("type",String.valueOf(event.getEventType()))
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(Math.max(0,latencyMs),TimeUnit.MILLISECONDS);
+    }
+    public void record(MicroEvent.Type type,Runnable processing){
+        record(type,() -> {
+            processing.run();
+            return null;
+        });
+    }
+    public <T> T record(MicroEvent.Type type,Supplier<T> processing){
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try{
+            T result = processing.get();
+            sample.stop(processingTimer(type,"success"));
+            return result;
+        }catch (RuntimeException ex){
+            sample.stop(processingTimer(type,"failure"));
+            throw ex;
+        }
+    }
+    public Mono<Void> timed(MicroEvent.Type type,Mono<Void> processing){
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return processing
+                    .doOnSuccess(done -> sample.stop(processingTimer(type,"success")))
+                    .doOnError(ex -> sample.stop(processingTimer(type,"failure")));
+        });
+    }
+    private Timer processingTimer(MicroEvent.Type type,String outcome){
+        return Timer.builder("events.consumer.processing")
+                .description("Time it takes to process an event, or a run of events of the same type in batch mode")
+                .tag("type",String.valueOf(type))
+                .tag("outcome",outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
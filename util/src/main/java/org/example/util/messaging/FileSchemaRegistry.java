@@ -0,0 +1,79 @@
+package org.example.util.messaging;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Stand-in for a schema registry, schemas are stored as {@code <fingerprint>.avsc} files in a directory that the
+ * services may share. Without a directory the schemas are only kept in memory.
+ */
+public class FileSchemaRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(FileSchemaRegistry.class);
+    private final Path directory;
+    private final ConcurrentMap<Long,Schema> schemas = new ConcurrentHashMap<>();
+    public FileSchemaRegistry(String directory){
+        this.directory = (directory == null || directory.isBlank()) ? null : Path.of(directory);
+        if (this.directory != null){
+            try{
+                Files.createDirectories(this.directory);
+            }catch (IOException ex){
+                throw new UncheckedIOException("Failed to create the schema registry directory " + directory,ex);
+            }
+        }
+    }
+    public static long fingerprint(Schema schema){
+        return SchemaNormalization.parsingFingerprint64(schema);
+    }
+    public long register(Schema schema){
+        long fingerprint = fingerprint(schema);
+        if (schemas.putIfAbsent(fingerprint,schema) == null && directory != null){
+            Path file = schemaPath(fingerprint);
+            if (!Files.exists(file)){
+                try{
+                    Path tmp = Files.createTempFile(directory,Long.toHexString(fingerprint),".tmp");
+                    Files.writeString(tmp,schema.toString(true),StandardCharsets.UTF_8);
+                    Files.move(tmp,file,StandardCopyOption.ATOMIC_MOVE);
+                    LOG.debug("Registered schema {} with fingerprint {}",schema.getFullName(),Long.toHexString(fingerprint));
+                }catch (IOException ex){
+                    // Another service may have registered the same schema at the same time
+                    LOG.warn("Failed to store schema {} in {}: {}",schema.getFullName(),directory,ex.toString());
+                }
+            }
+        }
+        return fingerprint;
+    }
+    /**
+     * Returns the schema with the fingerprint, or null if it is neither known to this service nor stored in the directory.
+     */
+    public Schema lookup(long fingerprint){
+        Schema schema = schemas.get(fingerprint);
+        if (schema != null || directory == null){
+            return schema;
+        }
+        Path file = schemaPath(fingerprint);
+        if (!Files.exists(file)){
+            return null;
+        }
+        try{
+            schema = new Schema.Parser().parse(Files.readString(file,StandardCharsets.UTF_8));
+        }catch (IOException ex){
+            throw new UncheckedIOException("Failed to read schema " + file,ex);
+        }
+        Schema previous = schemas.putIfAbsent(fingerprint,schema);
+        return previous != null ? previous : schema;
+    }
+    private Path schemaPath(long fingerprint){
+        return directory.resolve(Long.toHexString(fingerprint) + ".avsc");
+    }
+}
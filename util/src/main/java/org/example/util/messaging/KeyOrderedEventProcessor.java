@@ -0,0 +1,126 @@
+package org.example.util.messaging;
+
+import org.example.api.event.MicroEvent;
+import org.example.api.exceptions.EventProcessingException;
+import org.example.api.exceptions.InvalidInputException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Processes the events of different keys concurrently and the events of one key strictly one after the other. Keys
+ * are hashed into a fixed number of lanes, a lane handles its events in the order they were received.
+ * <p>
+ * Errors of an event are retried with a backoff and then logged, or passed to a dead letter handler, they don't
+ * terminate the stream of events.
+ * <p>
+ * A finite batch can be spread over many more lanes than are processed at a time, see {@link #processBatch(List)}.
+ */
+public class KeyOrderedEventProcessor<K,T> {
+    private static final Logger LOG = LoggerFactory.getLogger(KeyOrderedEventProcessor.class);
+    private final int lanes;
+    private final int concurrency;
+    private final int maxAttempts;
+    private final Duration backOffInitialInterval;
+    private final Function<MicroEvent<K,T>,Mono<Void>> handler;
+    public KeyOrderedEventProcessor(int concurrency,int maxAttempts,Duration backOffInitialInterval,
+                                    Function<MicroEvent<K,T>,Mono<Void>> handler){
+        this(concurrency,concurrency,maxAttempts,backOffInitialInterval,handler);
+    }
+    public KeyOrderedEventProcessor(int lanes,int concurrency,int maxAttempts,Duration backOffInitialInterval,
+                                    Function<MicroEvent<K,T>,Mono<Void>> handler){
+        if (concurrency < 1){
+            throw new IllegalArgumentException("Concurrency must be at least 1, got " + concurrency);
+        }
+        if (lanes < concurrency){
+            throw new IllegalArgumentException("Lanes must be at least the concurrency " + concurrency + ", got " + lanes);
+        }
+        this.lanes = lanes;
+        this.concurrency = concurrency;
+        this.maxAttempts = maxAttempts;
+        this.backOffInitialInterval = backOffInitialInterval;
+        this.handler = handler;
+    }
+    public Mono<Void> process(Flux<MicroEvent<K,T>> events){
+        return process(events,(event,error) -> Mono.empty());
+    }
+    /**
+     * Like {@link #process(Flux)}, but passes every event that still fails after its retries to deadLetter. The lane
+     * of the event waits until deadLetter completes.
+     */
+    public Mono<Void> process(Flux<MicroEvent<K,T>> events,BiFunction<MicroEvent<K,T>,Throwable,Mono<Void>> deadLetter){
+        // Every lane is subscribed at the same time, so groupBy never waits for a lane that has no subscriber
+        return events
+                .groupBy(event -> lane(event,concurrency))
+                .flatMap(lane -> lane.concatMap(event -> handle(event,deadLetter)),concurrency)
+                .then();
+    }
+    /**
+     * Processes a batch of events in all lanes, concurrency of them at a time, and emits the events that failed after
+     * their retries. Once an event fails, the later events of its key are not processed but reported as failed too,
+     * so that they keep their order when the batch is redelivered or sent to a DLQ.
+     */
+    public Mono<List<Failure<K,T>>> processBatch(List<MicroEvent<K,T>> events){
+        // The batch is finite, so unlike in process() there may be more lanes than are subscribed at a time
+        Map<Integer,List<MicroEvent<K,T>>> batchLanes = new LinkedHashMap<>();
+        events.forEach(event -> batchLanes.computeIfAbsent(lane(event,lanes),lane -> new ArrayList<>()).add(event));
+        return Flux.fromIterable(batchLanes.values())
+                .flatMap(this::processLane,concurrency)
+                .flatMapIterable(failures -> failures)
+                .collectList();
+    }
+    private Mono<List<Failure<K,T>>> processLane(List<MicroEvent<K,T>> events){
+        Set<K> failedKeys = new HashSet<>();
+        List<Failure<K,T>> failures = new ArrayList<>();
+        return Flux.fromIterable(events)
+                .concatMap(event -> {
+                    if (failedKeys.contains(event.getKey())){
+                        failures.add(new Failure<>(event,new EventProcessingException(
+                                "Skipped, an earlier event with key " + event.getKey() + " failed")));
+                        return Mono.empty();
+                    }
+                    return retried(event).onErrorResume(ex -> {
+                        LOG.warn("Failed to process a {} event with key {}: {}",event.getEventType(),event.getKey(),ex.toString());
+                        failedKeys.add(event.getKey());
+                        failures.add(new Failure<>(event,Exceptions.isRetryExhausted(ex) ? ex.getCause() : ex));
+                        return Mono.empty();
+                    });
+                })
+                .then(Mono.fromCallable(() -> failures));
+    }
+    private static int lane(MicroEvent<?,?> event,int lanes){
+        return event.getKey() == null ? 0 : Math.floorMod(event.getKey().hashCode(),lanes);
+    }
+    private Mono<Void> handle(MicroEvent<K,T> event,BiFunction<MicroEvent<K,T>,Throwable,Mono<Void>> deadLetter){
+        return retried(event).onErrorResume(ex -> {
+            LOG.warn("Failed to process a {} event with key {}: {}",event.getEventType(),event.getKey(),ex.toString());
+            return deadLetter.apply(event,Exceptions.isRetryExhausted(ex) ? ex.getCause() : ex)
+                    .onErrorResume(dlqError -> {
+                        LOG.error("Lost a {} event with key {}: {}",event.getEventType(),event.getKey(),dlqError.toString());
+                        return Mono.empty();
+                    });
+        });
+    }
+    private Mono<Void> retried(MicroEvent<K,T> event){
+        Mono<Void> processed = Mono.defer(() -> handler.apply(event));
+        if (maxAttempts > 1){
+            processed = processed.retryWhen(Retry.backoff(maxAttempts - 1,backOffInitialInterval)
+                    .filter(ex -> !(ex instanceof InvalidInputException) && !(ex instanceof EventProcessingException)));
+        }
+        return processed;
+    }
+    public record Failure<K,T>(MicroEvent<K,T> event,Throwable error){}
+}
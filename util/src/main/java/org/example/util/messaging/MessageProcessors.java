@@ -0,0 +1,150 @@
+package org.example.util.messaging;
+
+import org.example.api.event.MicroEvent;
+import org.example.api.exceptions.EventProcessingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Shared parts of the message processors of the core services: the dispatch of CREATE, DELETE and REPLACE events to
+ * the service, the {@link KeyOrderedEventProcessor}s configured by app.messageProcessor and
+ * the DLQ of a service.
+ */
+public class MessageProcessors {
+    private static final Logger LOG = LoggerFactory.getLogger(MessageProcessors.class);
+    private final EventDeduplicator deduplicator;
+    private final EventMetrics eventMetrics;
+    private final StreamBridge streamBridge;
+    private final int lanes;
+    private final int concurrency;
+    private final int maxAttempts;
+    private final Duration backOffInitialInterval;
+    public MessageProcessors(EventDeduplicator deduplicator,EventMetrics eventMetrics,StreamBridge streamBridge,
+                             int lanes,int concurrency,int maxAttempts,long backOffInitialIntervalMs){
+        this.deduplicator = deduplicator;
+        this.eventMetrics = eventMetrics;
+        this.streamBridge = streamBridge;
+        this.lanes = lanes;
+        this.concurrency = concurrency;
+        this.maxAttempts = maxAttempts;
+        this.backOffInitialInterval = Duration.ofMillis(backOffInitialIntervalMs);
+    }
+    /**
+     * Processes an event with the create and delete operations of a service, a REPLACE is a delete followed by a
+     * create. Duplicate events are skipped, processed events are timed and marked as processed.
+     */
+    public <K,T> Function<MicroEvent<K,T>,Mono<Void>> dispatcher(Function<T,Mono<?>> create,Function<K,Mono<Void>> delete){
+        return event -> {
+            if (deduplicator.isDuplicate(event.getEventId())){
+                LOG.debug("Skips duplicate event {}",event.getEventId());
+                return Mono.empty();
+            }
+            LOG.debug("Process a {} event for productId {}",event.getEventType(),event.getKey());
+            eventMetrics.recordLatency(event);
+            Mono<Void> processed = switch (event.getEventType()){
+                case CREATE -> create.apply(event.getData()).then();
+                case DELETE -> delete.apply(event.getKey());
+                case REPLACE -> delete.apply(event.getKey())
+                        .then(Mono.defer(() -> create.apply(event.getData())))
+                        .then();
+                default -> Mono.error(new EventProcessingException(
+                        "Incorrect event type: " + event.getEventType() + ", expected a CREATE, DELETE or REPLACE event"));
+            };
+            return eventMetrics.timed(event.getEventType(),processed)
+                    .then(Mono.fromRunnable(() -> deduplicator.markProcessed(event.getEventId())));
+        };
+    }
+    /**
+     * Default mode of a messageProcessor, processes one event at a time on the listener thread of the binding. A
+     * failed event fails the message, so the binding retries it and dead-letters it like any other listener error.
+     */
+    public <K,T> Consumer<MicroEvent<K,T>> blocking(Function<T,Mono<?>> create,Function<K,Mono<Void>> delete){
+        Function<MicroEvent<K,T>,Mono<Void>> handler = dispatcher(create,delete);
+        return event -> handler.apply(event).block();
+    }
+    /**
+     * Skips the events of a batch that are already processed, and an event that is redelivered within the same batch.
+     * The latency of the remaining events is recorded, the caller marks them as processed.
+     */
+    public <K,T> List<MicroEvent<K,T>> withoutDuplicates(List<MicroEvent<K,T>> batch){
+        Set<String> seen = new HashSet<>();
+        return batch.stream()
+                .filter(event -> event.getEventId() == null || seen.add(event.getEventId()))
+                .filter(event -> !deduplicator.isDuplicate(event.getEventId()))
+                .peek(eventMetrics::recordLatency)
+                .toList();
+    }
+    /**
+     * Reactive mode of a messageProcessor, enabled by the reactive_consumer profile. Events of different products are
+     * processed concurrently, up to app.messageProcessor.concurrency, and the events of one product in order. Messages
+     * are acknowledged when received, so events that still fail after their retries are sent to the DLQ binding
+     * instead of being dropped.
+     */
+    public <K,T> Function<Flux<MicroEvent<K,T>>,Mono<Void>> reactive(String dlqBinding,Function<T,Mono<?>> create,
+                                                                    Function<K,Mono<Void>> delete){
+        LOG.info("Creates a reactive message processor with concurrency = {}, DLQ = {}",concurrency,dlqBinding);
+        KeyOrderedEventProcessor<K,T> processor = new KeyOrderedEventProcessor<>(concurrency,maxAttempts,
+                backOffInitialInterval,dispatcher(create,delete));
+        return events -> processor.process(events,(event,error) -> deadLetter(dlqBinding,event,error));
+    }
+    /**
+     * Parallel mode of a messageProcessor, enabled by the parallel_consumer profile, see
+     * {@link KeyOrderedEventProcessor#processBatch}. The events of a batch are spread over app.messageProcessor.lanes
+     * lanes, up to app.messageProcessor.concurrency are processed at a time. Failed events, and the later events of
+     * their key in the batch, are sent to the DLQ binding instead of failing the batch, so one bad key doesn't make the
+     * whole batch redelivered. A batch still completes only when its slowest lane does, including the retries of that
+     * lane.
+     * The events of one product are only kept in order across instances when the binding delivers each product to a
+     * single instance, the parallel_consumer profile in config-repo/application.yml sets that up for each binder.
+     */
+    public <K,T> Consumer<List<MicroEvent<K,T>>> parallel(String dlqBinding,Function<T,Mono<?>> create,
+                                                          Function<K,Mono<Void>> delete){
+        LOG.info("Creates a parallel message processor with {} lanes and concurrency = {}, DLQ = {}",lanes,concurrency,dlqBinding);
+        KeyOrderedEventProcessor<K,T> processor = new KeyOrderedEventProcessor<>(lanes,concurrency,maxAttempts,
+                backOffInitialInterval,dispatcher(create,delete));
+        return batch -> {
+            LOG.debug("Process a batch of {} messages in parallel...",batch.size());
+            List<KeyOrderedEventProcessor.Failure<K,T>> failures = processor.processBatch(batch).block();
+            // Fails the batch if the DLQ can't be reached, so that it is redelivered instead of losing events
+            failures.forEach(failure -> sendToDlq(dlqBinding,failure.event(),failure.error()));
+            LOG.info("Parallel batch processing done, {} of {} messages failed",failures.size(),batch.size());
+        };
+    }
+    /**
+     * Sends the event to the DLQ binding with the error in the same headers that the binders use, fails if the
+     * binding doesn't accept it.
+     */
+    public void sendToDlq(String dlqBinding,MicroEvent<?,?> event,Throwable error){
+        LOG.warn("Sends a {} event with key {} to the DLQ: {}",event.getEventType(),event.getKey(),error.getMessage());
+        boolean sent = streamBridge.send(dlqBinding,MessageBuilder.withPayload(event)
+                .setHeader("x-exception-message",error.getMessage())
+                .setHeader("x-exception-fqcn",error.getClass().getName())
+                .build());
+        if (!sent){
+            throw new EventProcessingException("Failed to send a " + event.getEventType() + " event to the DLQ",error);
+        }
+    }
+    private Mono<Void> deadLetter(String dlqBinding,MicroEvent<?,?> event,Throwable error){
+        // The message is already acknowledged, so the DLQ is retried until it takes the event. Meanwhile the lane
+        // holds back the later events of the key
+        return Mono.<Void>fromRunnable(() -> sendToDlq(dlqBinding,event,error))
+                .subscribeOn(Schedulers.boundedElastic())
+                .retryWhen(Retry.backoff(Long.MAX_VALUE,backOffInitialInterval)
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> LOG.warn("Retries to send a {} event with key {} to the DLQ: {}",
+                                event.getEventType(),event.getKey(),signal.failure().toString())));
+    }
+}
@@ -0,0 +1,56 @@
+package org.example.util.messaging;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.api.core.product.Product;
+import org.example.api.core.recommendation.Recommendation;
+import org.example.api.core.review.Review;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.converter.MessageConverter;
+
+import java.util.List;
+
+@Configuration
+public class MessagingConfig {
+    private static final Logger LOG = LoggerFactory.getLogger(MessagingConfig.class);
+
+    /**
+     * Picked up by Spring Cloud Stream next to the JSON converter, used by bindings with the content type
+     * application/vnd.microevent+avro and by consumers receiving messages with that content type.
+     */
+    @Bean
+    public MessageConverter microEventAvroConverter(@Value("${app.schemaRegistry.directory:}") String directory){
+        LOG.info("Creates an Avro converter for MicroEvents, schema registry directory = '{}'",directory);
+        return new MicroEventAvroConverter(new FileSchemaRegistry(directory),
+                List.of(Product.class,Recommendation.class,Review.class));
+    }
+
+    @Bean
+    public EventDeduplicator eventDeduplicator(
+            @Value("${app.dedup.maxSize:100000}") int maxSize,
+            @Value("${app.dedup.file:}") String file,
+            MeterRegistry meterRegistry){
+        return new EventDeduplicator(maxSize,file,meterRegistry);
+    }
+
+    @Bean
+    public EventMetrics eventMetrics(MeterRegistry meterRegistry){
+        return new EventMetrics(meterRegistry);
+    }
+
+    @Bean
+    public MessageProcessors messageProcessors(
+            EventDeduplicator eventDeduplicator,
+            EventMetrics eventMetrics,
+            StreamBridge streamBridge,
+            @Value("${app.messageProcessor.lanes:1024}") int lanes,
+            @Value("${app.messageProcessor.concurrency:16}") int concurrency,
+            @Value("${app.messageProcessor.maxAttempts:3}") int maxAttempts,
+            @Value("${app.messageProcessor.backOffInitialIntervalMs:500}") long backOffInitialIntervalMs){
+        return new MessageProcessors(eventDeduplicator,eventMetrics,streamBridge,lanes,concurrency,maxAttempts,backOffInitialIntervalMs);
+    }
+}
@@ -0,0 +1,166 @@
+package org.example.util.messaging;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.reflect.ReflectData;
+import org.apache.avro.reflect.ReflectDatumReader;
+import org.apache.avro.reflect.ReflectDatumWriter;
+import org.example.api.event.MicroEvent;
+import org.springframework.core.MethodParameter;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.util.MimeType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Converts {@link MicroEvent}s to and from Avro's single object encoding: a two byte marker, the 64-bit fingerprint
+ * of the writer schema and the binary encoded event. The schema of the data is derived from its class, a binding
+ * opts in by setting its content type to {@link #MIME_TYPE}.
+ */
+public class MicroEventAvroConverter extends AbstractMessageConverter {
+    public static final MimeType MIME_TYPE = MimeType.valueOf("application/vnd.microevent+avro");
+    private static final byte[] MARKER = {(byte) 0xC3,(byte) 0x01};
+    private static final int HEADER_SIZE = MARKER.length + Long.BYTES;
+    private static final String NAMESPACE = "org.example.api.event.avro";
+    private final FileSchemaRegistry registry;
+    private final ReflectData reflectData = ReflectData.AllowNull.get();
+    private final ConcurrentMap<Class<?>,Schema> envelopes = new ConcurrentHashMap<>();
+    private final Schema emptyEnvelope;
+    public MicroEventAvroConverter(FileSchemaRegistry registry,Collection<Class<?>> knownDataTypes){
+        super(MIME_TYPE);
+        this.registry = registry;
+        this.emptyEnvelope = envelope("Empty",Schema.create(Schema.Type.NULL));
+        registry.register(emptyEnvelope);
+        // Registers the schemas up front so events can be read without a shared registry directory
+        knownDataTypes.forEach(type -> registry.register(envelopeSchema(type)));
+    }
+    @Override
+    protected boolean supports(Class<?> clazz){
+        return MicroEvent.class.isAssignableFrom(clazz);
+    }
+    @Override
+    protected Object convertToInternal(Object payload,MessageHeaders headers,Object conversionHint){
+        MicroEvent<?,?> event = (MicroEvent<?,?>) payload;
+        if (event.getKey() != null && !(event.getKey() instanceof Integer)){
+            throw new MessageConversionException("Only Integer keys are supported, got " + event.getKey().getClass().getName());
+        }
+        try{
+            // Deriving the schema of the data class can fail as well, it is reported as a conversion failure too
+            Schema schema = event.getData() == null ? emptyEnvelope : envelopeSchema(event.getData().getClass());
+            long fingerprint = registry.register(schema);
+            GenericRecord record = new GenericData.Record(schema);
+            record.put("eventId",event.getEventId());
+            record.put("eventType",event.getEventType() == null ? null : event.getEventType().name());
+            record.put("key",event.getKey());
+            record.put("data",event.getData());
+            ZonedDateTime createdAt = event.getEventCreatedAt();
+            if (createdAt != null){
+                record.put("eventCreatedAt",ChronoUnit.MICROS.between(Instant.EPOCH,createdAt.toInstant()));
+                record.put("eventCreatedAtZone",createdAt.getZone().getId());
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            out.write(MARKER);
+            out.write(ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(fingerprint).array());
+            BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(out,null);
+            new ReflectDatumWriter<>(schema,reflectData).write(record,encoder);
+            encoder.flush();
+            return out.toByteArray();
+        }catch (IOException | RuntimeException ex){
+            throw new MessageConversionException("Failed to encode " + event.getEventType() + " event as Avro",ex);
+        }
+    }
+    @Override
+    protected Object convertFromInternal(Message<?> message,Class<?> targetClass,Object conversionHint){
+        if (!(message.getPayload() instanceof byte[] bytes)){
+            return null;
+        }
+        if (bytes.length < HEADER_SIZE || bytes[0] != MARKER[0] || bytes[1] != MARKER[1]){
+            throw new MessageConversionException(message,"Payload is not an Avro single object encoded event");
+        }
+        long fingerprint = ByteBuffer.wrap(bytes,MARKER.length,Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).getLong();
+        Schema schema = writerSchema(fingerprint,conversionHint);
+        if (schema == null){
+            throw new MessageConversionException(message,"Unknown schema fingerprint " + Long.toHexString(fingerprint));
+        }
+        try{
+            BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(bytes,HEADER_SIZE,bytes.length - HEADER_SIZE,null);
+            // Records of the data are read into the classes they were derived from, the envelope into a generic record
+            GenericRecord record = (GenericRecord) new ReflectDatumReader<>(schema,schema,reflectData).read(null,decoder);
+            Object eventId = record.get("eventId");
+            Object eventType = record.get("eventType");
+            Object createdAt = record.get("eventCreatedAt");
+            Object zone = record.get("eventCreatedAtZone");
+            return new MicroEvent<>(
+                    eventId == null ? null : eventId.toString(),
+                    eventType == null ? null : MicroEvent.Type.valueOf(eventType.toString()),
+                    record.get("key"),
+                    record.get("data"),
+                    createdAt == null ? null : ZonedDateTime.ofInstant(
+                            Instant.EPOCH.plus((Long) createdAt,ChronoUnit.MICROS),
+                            zone == null ? ZoneId.of("UTC") : ZoneId.of(zone.toString())));
+        }catch (IOException | RuntimeException ex){
+            throw new MessageConversionException(message,"Failed to decode Avro event",ex);
+        }
+    }
+    public Schema envelopeSchema(Class<?> dataClass){
+        return envelopes.computeIfAbsent(dataClass,type -> {
+            Schema dataSchema = reflectData.getSchema(type);
+            return envelope(type.getSimpleName(),Schema.createUnion(Schema.create(Schema.Type.NULL),dataSchema));
+        });
+    }
+    private Schema writerSchema(long fingerprint,Object conversionHint){
+        Schema schema = registry.lookup(fingerprint);
+        if (schema == null){
+            // Falls back to the schema of the consumer's own data type, usable if the writer derived the same one
+            Class<?> dataClass = dataClass(conversionHint);
+            if (dataClass != null && FileSchemaRegistry.fingerprint(envelopeSchema(dataClass)) == fingerprint){
+                schema = envelopeSchema(dataClass);
+                registry.register(schema);
+            }
+        }
+        return schema;
+    }
+    private static Class<?> dataClass(Object conversionHint){
+        Type type = conversionHint instanceof MethodParameter parameter
+                ? parameter.getGenericParameterType()
+                : conversionHint instanceof Type hint ? hint : null;
+        if (type instanceof ParameterizedType parameterized
+                && parameterized.getActualTypeArguments().length == 2
+                && parameterized.getActualTypeArguments()[1] instanceof Class<?> dataClass
+                && dataClass != Object.class){
+            return dataClass;
+        }
+        return null;
+    }
+    private static Schema envelope(String dataName,Schema dataSchema){
+        return SchemaBuilder.record("MicroEvent" + dataName).namespace(NAMESPACE).fields()
+                .optionalString("eventId")
+                .optionalString("eventType")
+                .optionalInt("key")
+                .name("data").type(dataSchema).noDefault()
+                .optionalLong("eventCreatedAt")
+                .optionalString("eventCreatedAtZone")
+                .endRecord();
+    }
+}
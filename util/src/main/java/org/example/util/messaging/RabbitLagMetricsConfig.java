@@ -0,0 +1,75 @@
+package org.example.util.messaging;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the depth of the consumer group queue of a binding as events.consumer.lag, the RabbitMQ counterpart of
+ * the spring.cloud.stream.binder.kafka.offset gauge that the Kafka binder publishes itself. The depth is read from the
+ * broker at most once per refresh interval.
+ */
+@Configuration
+@ConditionalOnClass(name = "org.springframework.amqp.core.AmqpAdmin")
+@ConditionalOnProperty(name = "spring.cloud.stream.defaultBinder",havingValue = "rabbit",matchIfMissing = true)
+public class RabbitLagMetricsConfig {
+    private static final Logger LOG = LoggerFactory.getLogger(RabbitLagMetricsConfig.class);
+    private final ObjectProvider<AmqpAdmin> amqpAdmin;
+    private final long refreshMs;
+    private final AtomicLong depth = new AtomicLong();
+    private volatile long refreshedAt;
+    private String queue;
+    public RabbitLagMetricsConfig(
+            ObjectProvider<AmqpAdmin> amqpAdmin,
+            MeterRegistry meterRegistry,
+            Environment environment,
+            @Value("${app.lagMetrics.binding:messageProcessor-in-0}") String binding,
+            @Value("${app.lagMetrics.refreshMs:5000}") long refreshMs
+    ){
+        this.amqpAdmin = amqpAdmin;
+        this.refreshMs = refreshMs;
+        String destination = environment.getProperty("spring.cloud.stream.bindings." + binding + ".destination");
+        String group = environment.getProperty("spring.cloud.stream.bindings." + binding + ".group");
+        if (destination == null || group == null){
+            // Anonymous consumers get a queue of their own that is deleted with them, there is no lag to report
+            LOG.debug("No destination and group for binding {}, does not publish a lag gauge",binding);
+            return;
+        }
+        String prefix = "spring.cloud.stream.bindings." + binding + ".consumer.";
+        boolean partitioned = environment.getProperty(prefix + "partitioned",Boolean.class,false);
+        // The binder appends the instance index to the queue of a partitioned consumer
+        this.queue = destination + "." + group
+                + (partitioned ? "-" + environment.getProperty(prefix + "instanceIndex","0") : "");
+        Gauge.builder("events.consumer.lag",this,RabbitLagMetricsConfig::queueDepth)
+                .description("Number of messages waiting in the queue of the consumer group")
+                .tag("binder","rabbit")
+                .tag("queue",queue)
+                .register(meterRegistry);
+        LOG.info("Publishes the depth of queue {} as consumer lag",queue);
+    }
+    private double queueDepth(){
+        long now = System.currentTimeMillis();
+        if (now - refreshedAt >= refreshMs){
+            refreshedAt = now;
+            try{
+                AmqpAdmin admin = amqpAdmin.getIfAvailable();
+                QueueInformation info = admin == null ? null : admin.getQueueInfo(queue);
+                depth.set(info == null ? 0 : info.getMessageCount());
+            }catch (RuntimeException ex){
+                LOG.debug("Failed to read the depth of queue {}: {}",queue,ex.toString());
+            }
+        }
+        return depth.get();
+    }
+}
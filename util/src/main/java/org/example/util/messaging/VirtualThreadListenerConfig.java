@@ -0,0 +1,54 @@
+package org.example.util.messaging;
+
+import org.example.util.concurrent.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.listener.AbstractMessageListenerContainer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.stream.config.ListenerContainerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+/**
+ * Runs the listeners of the blocking message consumers on virtual threads when app.virtualThreads.enabled is set and
+ * the service runs on Java 21. A consumer still handles one message at a time, its blocking calls no longer hold a
+ * platform thread.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.virtualThreads.enabled",havingValue = "true")
+public class VirtualThreadListenerConfig {
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualThreadListenerConfig.class);
+
+    @Configuration
+    @ConditionalOnClass(name = {"org.springframework.amqp.rabbit.listener.AbstractMessageListenerContainer",
+            "org.springframework.cloud.stream.config.ListenerContainerCustomizer"})
+    static class RabbitListenerConfig {
+        @Bean
+        public ListenerContainerCustomizer<AbstractMessageListenerContainer> rabbitVirtualThreadCustomizer(){
+            return (container,destination,group) -> {
+                if (VirtualThreads.isSupported()){
+                    LOG.info("Runs the rabbit listener of {}.{} on virtual threads",destination,group);
+                    container.setTaskExecutor(VirtualThreads.newExecutor("rabbit-" + destination + "-"));
+                }
+            };
+        }
+    }
+
+    @Configuration
+    @ConditionalOnClass(name = {"org.springframework.kafka.listener.AbstractMessageListenerContainer",
+            "org.springframework.cloud.stream.config.ListenerContainerCustomizer"})
+    static class KafkaListenerConfig {
+        @Bean
+        public ListenerContainerCustomizer<org.springframework.kafka.listener.AbstractMessageListenerContainer<?,?>> kafkaVirtualThreadCustomizer(){
+            return (container,destination,group) -> {
+                if (VirtualThreads.isSupported()){
+                    LOG.info("Runs the kafka listener of {}.{} on virtual threads",destination,group);
+                    container.getContainerProperties().setListenerTaskExecutor(
+                            new TaskExecutorAdapter(VirtualThreads.newExecutor("kafka-" + destination + "-")));
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.example.util.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Compiled for Java 21 and only loaded by {@link VirtualThreads} when the service runs on Java 21.
+ */
+class Java21VirtualThreadSupport implements VirtualThreadSupport {
+    @Override
+    public ExecutorService newExecutor(String namePrefix){
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(namePrefix,0).factory());
+    }
+    @Override
+    public boolean isVirtual(Thread thread){
+        return thread.isVirtual();
+    }
+}
@@ -0,0 +1,41 @@
+package org.example.util.concurrent;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class VirtualThreadsTests {
+    @Test
+    void usesBoundedElasticThreadsWhenDisabled(){
+        Scheduler scheduler = VirtualThreads.newBoundedElasticOrVirtual(false,2,10,"test-pool");
+        String thread = Mono.fromCallable(() -> Thread.currentThread().getName())
+                .subscribeOn(scheduler)
+                .block(Duration.ofSeconds(5));
+        assertTrue(thread.startsWith("test-pool"),thread);
+        scheduler.dispose();
+    }
+    @Test
+    void usesVirtualThreadsOnJava21(){
+        // Runs in the java21Test task
+        assumeTrue(Runtime.version().feature() >= 21,"Needs Java 21");
+        assertTrue(VirtualThreads.isSupported());
+        Scheduler scheduler = VirtualThreads.newBoundedElasticOrVirtual(true,2,10,"test-pool");
+        Boolean virtual = Mono.fromCallable(() -> VirtualThreads.isVirtual(Thread.currentThread()))
+                .subscribeOn(scheduler)
+                .block(Duration.ofSeconds(5));
+        assertTrue(virtual);
+        scheduler.dispose();
+    }
+    @Test
+    void rejectsExecutorsBeforeJava21(){
+        assumeTrue(Runtime.version().feature() < 21,"Runs before Java 21 only");
+        assertFalse(VirtualThreads.isSupported());
+        assertThrows(UnsupportedOperationException.class,() -> VirtualThreads.newExecutor("test-"));
+        assertNotNull(VirtualThreads.newBoundedElasticOrVirtual(true,2,10,"test-pool"));
+    }
+}
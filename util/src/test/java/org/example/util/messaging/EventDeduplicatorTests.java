@@ -0,0 +1,54 @@
+package org.example.util.messaging;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventDeduplicatorTests {
+    @TempDir
+    Path tempDir;
+    @Test
+    void detectsProcessedEvents(){
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        EventDeduplicator deduplicator = new EventDeduplicator(2,null,registry);
+        assertFalse(deduplicator.isDuplicate("a"));
+        deduplicator.markProcessed("a");
+        assertTrue(deduplicator.isDuplicate("a"));
+        assertFalse(deduplicator.isDuplicate(null));
+        assertEquals(1.0,registry.get("events.dedup").tag("result","hit").counter().count());
+        assertEquals(1.0,registry.get("events.dedup").tag("result","miss").counter().count());
+    }
+    @Test
+    void evictsTheOldestIds(){
+        EventDeduplicator deduplicator = new EventDeduplicator(2,null,new SimpleMeterRegistry());
+        deduplicator.markProcessed("a");
+        deduplicator.markProcessed("b");
+        deduplicator.markProcessed("c");
+        assertFalse(deduplicator.isDuplicate("a"));
+        assertTrue(deduplicator.isDuplicate("b"));
+        assertTrue(deduplicator.isDuplicate("c"));
+    }
+    @Test
+    void keepsTheWindowOverRestarts() throws IOException {
+        String file = tempDir.resolve("dedup.log").toString();
+        EventDeduplicator deduplicator = new EventDeduplicator(3,file,new SimpleMeterRegistry());
+        for (String id : new String[]{"a","b","c","d","e","f","g"}){
+            deduplicator.markProcessed(id);
+        }
+        deduplicator.close();
+        // The journal was compacted when it grew to twice the window
+        assertTrue(Files.readAllLines(Path.of(file)).size() <= 6);
+
+        EventDeduplicator restarted = new EventDeduplicator(3,file,new SimpleMeterRegistry());
+        assertEquals(3,restarted.size());
+        assertTrue(restarted.isDuplicate("g"));
+        assertFalse(restarted.isDuplicate("d"));
+        restarted.close();
+    }
+}
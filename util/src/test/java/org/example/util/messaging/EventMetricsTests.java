@@ -0,0 +1,37 @@
+package org.example.util.messaging;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.api.event.MicroEvent;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventMetricsTests {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final EventMetrics metrics = new EventMetrics(registry);
+    @Test
+    void recordsLatencySinceCreation(){
+        metrics.recordLatency(new MicroEvent<>("1",MicroEvent.Type.CREATE,1,null,ZonedDateTime.now().minusSeconds(2)));
+        // An event from a producer with a clock ahead of the consumer's
+        metrics.recordLatency(new MicroEvent<>("2",MicroEvent.Type.CREATE,1,null,ZonedDateTime.now().plusSeconds(2)));
+        var timer = registry.get("events.consumer.latency").tag("type","CREATE").timer();
+        assertEquals(2,timer.count());
+        assertTrue(timer.max(TimeUnit.MILLISECONDS) >= 2000);
+        assertTrue(timer.totalTime(TimeUnit.MILLISECONDS) < 4000);
+    }
+    @Test
+    void recordsProcessingOutcome(){
+        metrics.record(MicroEvent.Type.DELETE,() -> {});
+        assertThrows(IllegalStateException.class,() -> metrics.record(MicroEvent.Type.DELETE,() -> {
+            throw new IllegalStateException("failed");
+        }));
+        metrics.timed(MicroEvent.Type.CREATE,Mono.empty()).block();
+        assertEquals(1,registry.get("events.consumer.processing").tags("type","DELETE","outcome","success").timer().count());
+        assertEquals(1,registry.get("events.consumer.processing").tags("type","DELETE","outcome","failure").timer().count());
+        assertEquals(1,registry.get("events.consumer.processing").tags("type","CREATE","outcome","success").timer().count());
+    }
+}
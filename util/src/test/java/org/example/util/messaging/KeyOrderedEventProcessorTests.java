@@ -0,0 +1,121 @@
+package org.example.util.messaging;
+
+import org.example.api.event.MicroEvent;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeyOrderedEventProcessorTests {
+    @Test
+    void keepsTheOrderOfEachKey(){
+        Map<Integer,List<Integer>> processed = new ConcurrentHashMap<>();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        KeyOrderedEventProcessor<Integer,Integer> processor = new KeyOrderedEventProcessor<>(4,1,Duration.ZERO,
+                event -> Mono.delay(Duration.ofMillis(ThreadLocalRandom.current().nextInt(5)))
+                        .doOnSubscribe(s -> maxInFlight.accumulateAndGet(inFlight.incrementAndGet(),Math::max))
+                        .then(Mono.fromRunnable(() -> {
+                            processed.computeIfAbsent(event.getKey(),key -> new CopyOnWriteArrayList<>()).add(event.getData());
+                            inFlight.decrementAndGet();
+                        })));
+        Flux<MicroEvent<Integer,Integer>> events = Flux.range(0,200)
+                .map(i -> new MicroEvent<>(MicroEvent.Type.CREATE,i % 10,i));
+        processor.process(events).block(Duration.ofSeconds(10));
+
+        assertEquals(10,processed.size());
+        processed.forEach((key,values) -> {
+            assertEquals(20,values.size());
+            for (int i = 1; i < values.size(); i++){
+                assertTrue(values.get(i - 1) < values.get(i),"Events of key " + key + " out of order: " + values);
+            }
+        });
+        assertTrue(maxInFlight.get() > 1,"Expected events of different keys to be processed concurrently");
+        assertTrue(maxInFlight.get() <= 4);
+    }
+    @Test
+    void continuesAfterFailedEvents(){
+        AtomicInteger attempts = new AtomicInteger();
+        List<Integer> processed = new CopyOnWriteArrayList<>();
+        KeyOrderedEventProcessor<Integer,Integer> processor = new KeyOrderedEventProcessor<>(2,3,Duration.ofMillis(1),
+                event -> event.getData() == 1
+                        ? Mono.fromRunnable(attempts::incrementAndGet).then(Mono.error(new IllegalStateException("db down")))
+                        : Mono.fromRunnable(() -> processed.add(event.getData())));
+        processor.process(Flux.range(0,3).map(i -> new MicroEvent<>(MicroEvent.Type.CREATE,1,i))).block(Duration.ofSeconds(5));
+
+        assertEquals(3,attempts.get());
+        assertEquals(List.of(0,2),processed);
+    }
+    @Test
+    void passesFailedEventsToTheDeadLetter(){
+        List<Integer> processed = new CopyOnWriteArrayList<>();
+        List<Integer> deadLetters = new CopyOnWriteArrayList<>();
+        KeyOrderedEventProcessor<Integer,Integer> processor = new KeyOrderedEventProcessor<>(2,3,Duration.ofMillis(1),
+                event -> event.getData() == 1
+                        ? Mono.error(new IllegalStateException("db down"))
+                        : Mono.fromRunnable(() -> processed.add(event.getData())));
+        processor.process(Flux.range(0,3).map(i -> new MicroEvent<>(MicroEvent.Type.CREATE,1,i)),
+                (event,error) -> {
+                    assertInstanceOf(IllegalStateException.class,error);
+                    deadLetters.add(event.getData());
+                    return Mono.empty();
+                }).block(Duration.ofSeconds(5));
+
+        assertEquals(List.of(1),deadLetters);
+        assertEquals(List.of(0,2),processed);
+    }
+    @Test
+    void processesBatchInLanes(){
+        Map<Integer,List<Integer>> processed = new ConcurrentHashMap<>();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        KeyOrderedEventProcessor<Integer,Integer> processor = new KeyOrderedEventProcessor<>(256,8,1,Duration.ZERO,
+                event -> Mono.delay(Duration.ofMillis(ThreadLocalRandom.current().nextInt(3)))
+                        .doOnSubscribe(s -> maxInFlight.accumulateAndGet(inFlight.incrementAndGet(),Math::max))
+                        .then(Mono.fromRunnable(() -> {
+                            processed.computeIfAbsent(event.getKey(),key -> new CopyOnWriteArrayList<>()).add(event.getData());
+                            inFlight.decrementAndGet();
+                        })));
+        List<MicroEvent<Integer,Integer>> batch = Flux.range(0,500)
+                .map(i -> new MicroEvent<>(MicroEvent.Type.CREATE,i % 50,i))
+                .collectList().block();
+        assertTrue(processor.processBatch(batch).block(Duration.ofSeconds(10)).isEmpty());
+
+        assertEquals(50,processed.size());
+        processed.forEach((key,values) -> {
+            assertEquals(10,values.size());
+            for (int i = 1; i < values.size(); i++){
+                assertTrue(values.get(i - 1) < values.get(i),"Events of key " + key + " out of order: " + values);
+            }
+        });
+        assertTrue(maxInFlight.get() > 1,"Expected events of different keys to be processed concurrently");
+        assertTrue(maxInFlight.get() <= 8);
+    }
+    @Test
+    void reportsLaterEventsOfAFailedKey(){
+        List<Integer> processed = new CopyOnWriteArrayList<>();
+        KeyOrderedEventProcessor<Integer,Integer> processor = new KeyOrderedEventProcessor<>(16,4,1,Duration.ZERO,
+                event -> event.getData() == 1
+                        ? Mono.error(new IllegalStateException("db down"))
+                        : Mono.fromRunnable(() -> processed.add(event.getData())));
+        List<MicroEvent<Integer,Integer>> batch = List.of(
+                new MicroEvent<>(MicroEvent.Type.CREATE,1,0),
+                new MicroEvent<>(MicroEvent.Type.CREATE,1,1),
+                new MicroEvent<>(MicroEvent.Type.CREATE,2,2),
+                new MicroEvent<>(MicroEvent.Type.CREATE,1,3));
+        List<KeyOrderedEventProcessor.Failure<Integer,Integer>> failures = processor.processBatch(batch).block(Duration.ofSeconds(5));
+
+        assertEquals(List.of(1,3),failures.stream().map(failure -> failure.event().getData()).toList());
+        assertInstanceOf(IllegalStateException.class,failures.get(0).error());
+        assertEquals(List.of(0,2),processed.stream().sorted().toList());
+    }
+}
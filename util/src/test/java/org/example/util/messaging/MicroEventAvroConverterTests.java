@@ -0,0 +1,67 @@
+package org.example.util.messaging;
+
+import org.example.api.core.product.Product;
+import org.example.api.core.review.Review;
+import org.example.api.event.MicroEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MicroEventAvroConverterTests {
+    @TempDir
+    Path tempDir;
+    @Test
+    void roundTripsCreateEvents(){
+        MicroEventAvroConverter converter = converter(tempDir,List.of(Review.class));
+        MicroEvent<Integer,Review> event = new MicroEvent<>(MicroEvent.Type.CREATE,1,
+                new Review(1,2,"a","s","c","sa"));
+        MicroEvent<?,?> read = roundTrip(converter,converter,event);
+        assertEquals(event.getEventId(),read.getEventId());
+        assertEquals(MicroEvent.Type.CREATE,read.getEventType());
+        assertEquals(1,read.getKey());
+        assertEquals(event.getEventCreatedAt().toInstant(),read.getEventCreatedAt().toInstant());
+        Review review = assertInstanceOf(Review.class,read.getData());
+        assertEquals(2,review.getReviewId());
+        assertEquals("a",review.getAuthor());
+    }
+    @Test
+    void roundTripsDeleteEvents(){
+        MicroEventAvroConverter converter = converter(tempDir,List.of());
+        MicroEvent<?,?> read = roundTrip(converter,converter,new MicroEvent<>(MicroEvent.Type.DELETE,1,null));
+        assertEquals(MicroEvent.Type.DELETE,read.getEventType());
+        assertEquals(1,read.getKey());
+        assertNull(read.getData());
+    }
+    @Test
+    void readsSchemasFromTheRegistryDirectory() throws Exception {
+        Path consumerDir = Files.createDirectories(tempDir.resolve("consumer"));
+        MicroEventAvroConverter producer = converter(tempDir,List.of());
+        MicroEventAvroConverter unknownSchemas = converter(consumerDir,List.of());
+        MicroEvent<Integer,Product> event = new MicroEvent<>(MicroEvent.Type.CREATE,1,new Product(1,"n",1,"sa"));
+        assertThrows(MessageConversionException.class,() -> roundTrip(producer,unknownSchemas,event));
+
+        MicroEventAvroConverter sharedRegistry = converter(tempDir,List.of());
+        MicroEvent<?,?> read = roundTrip(producer,sharedRegistry,event);
+        assertEquals("n",assertInstanceOf(Product.class,read.getData()).getName());
+    }
+    private static MicroEventAvroConverter converter(Path directory,List<Class<?>> knownDataTypes){
+        return new MicroEventAvroConverter(new FileSchemaRegistry(directory.toString()),knownDataTypes);
+    }
+    private static MicroEvent<?,?> roundTrip(MicroEventAvroConverter writer,MicroEventAvroConverter reader,MicroEvent<?,?> event){
+        MessageHeaders headers = new MessageHeaders(Map.of(MessageHeaders.CONTENT_TYPE,MicroEventAvroConverter.MIME_TYPE));
+        Message<?> message = writer.toMessage(event,headers);
+        assertNotNull(message);
+        Message<?> received = MessageBuilder.withPayload(message.getPayload()).copyHeaders(message.getHeaders()).build();
+        return (MicroEvent<?,?>) reader.fromMessage(received,MicroEvent.class);
+    }
+}
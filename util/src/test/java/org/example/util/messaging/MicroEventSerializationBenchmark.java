@@ -0,0 +1,86 @@
+package org.example.util.messaging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.api.core.review.Review;
+import org.example.api.event.MicroEvent;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.SmartMessageConverter;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the payload size and the encode and decode cost of the JSON and the Avro path for review events.
+ * Excluded from the test task, run it with {@code ./gradlew :util:benchmark}.
+ */
+@Tag("benchmark")
+public class MicroEventSerializationBenchmark {
+    private static final int EVENTS = 1_000;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 50;
+    @Test
+    void compareJsonAndAvro(){
+        List<MicroEvent<Integer,Review>> events = new ArrayList<>();
+        for (int i = 0; i < EVENTS; i++){
+            events.add(new MicroEvent<>(MicroEvent.Type.CREATE,i,
+                    new Review(i,i % 10,"Author " + i,"Subject " + i,"Content of review " + i,null)));
+        }
+        MappingJackson2MessageConverter json = new MappingJackson2MessageConverter();
+        json.setObjectMapper(new ObjectMapper().findAndRegisterModules());
+        MicroEventAvroConverter avro = new MicroEventAvroConverter(new FileSchemaRegistry(null),List.of(Review.class));
+
+        Result jsonResult = measure(json,MimeTypeUtils.APPLICATION_JSON,events);
+        Result avroResult = measure(avro,MicroEventAvroConverter.MIME_TYPE,events);
+        System.out.printf("%-5s %10s %14s %14s%n","","bytes/event","encode ns/event","decode ns/event");
+        System.out.printf("%-5s %10d %14d %14d%n","json",jsonResult.bytes(),jsonResult.encodeNanos(),jsonResult.decodeNanos());
+        System.out.printf("%-5s %10d %14d %14d%n","avro",avroResult.bytes(),avroResult.encodeNanos(),avroResult.decodeNanos());
+        assertTrue(avroResult.bytes() < jsonResult.bytes());
+    }
+    private static Result measure(SmartMessageConverter converter,MimeType mimeType,List<MicroEvent<Integer,Review>> events){
+        MessageHeaders headers = new MessageHeaders(Map.of(MessageHeaders.CONTENT_TYPE,mimeType));
+        List<Message<?>> messages = new ArrayList<>();
+        long bytes = 0;
+        for (MicroEvent<Integer,Review> event : events){
+            Message<?> message = converter.toMessage(event,headers);
+            bytes += ((byte[]) message.getPayload()).length;
+            messages.add(MessageBuilder.withPayload(message.getPayload()).copyHeaders(message.getHeaders()).build());
+        }
+        for (int round = 0; round < WARMUP_ROUNDS; round++){
+            encode(converter,headers,events);
+            decode(converter,messages);
+        }
+        long encodeNanos = 0;
+        long decodeNanos = 0;
+        for (int round = 0; round < MEASURED_ROUNDS; round++){
+            long start = System.nanoTime();
+            encode(converter,headers,events);
+            long encoded = System.nanoTime();
+            decode(converter,messages);
+            encodeNanos += encoded - start;
+            decodeNanos += System.nanoTime() - encoded;
+        }
+        long operations = (long) MEASURED_ROUNDS * events.size();
+        return new Result(bytes / events.size(),encodeNanos / operations,decodeNanos / operations);
+    }
+    private static void encode(SmartMessageConverter converter,MessageHeaders headers,List<MicroEvent<Integer,Review>> events){
+        for (MicroEvent<Integer,Review> event : events){
+            converter.toMessage(event,headers);
+        }
+    }
+    private static void decode(SmartMessageConverter converter,List<Message<?>> messages){
+        for (Message<?> message : messages){
+            converter.fromMessage(message,MicroEvent.class,MicroEvent.class);
+        }
+    }
+    private record Result(long bytes,long encodeNanos,long decodeNanos){}
+}